@@ -0,0 +1,29 @@
+#!/bin/sh
+# Create a class data sharing archive from a training run, so the game starts faster,
+# then compare the time to the first question with and without the archive.
+# Usage : scripts/cds.sh [game.jar]
+# Without argument, the sources are compiled into vocabulary.jar first (The class data sharing
+# archive only keeps the classes read from a .jar file).
+cd "$(dirname "$0")/.." || exit 1
+ARCHIVE=vocabulary.jsa
+RUNS=5
+
+if [ -n "$1" ]; then
+    JAR=$1
+else
+    JAR=vocabulary.jar
+    CLASSES=$(mktemp -d) || exit 1
+    javac -encoding UTF-8 -d "$CLASSES" $(find src -name '*.java') || exit 1
+    jar cf "$JAR" -C "$CLASSES" . || exit 1
+    rm -rf "$CLASSES"
+fi
+
+# The training run loads the dictionary, shows the first question then quits (without writing any file)
+java -XX:ArchiveClassesAtExit=$ARCHIVE -cp "$JAR" main.App --startup-benchmark || exit 1
+
+echo "Without archive :"
+for i in $(seq $RUNS); do java -Xshare:auto -cp "$JAR" main.App --startup-benchmark; done
+echo "With archive :"
+for i in $(seq $RUNS); do java -XX:SharedArchiveFile=$ARCHIVE -cp "$JAR" main.App --startup-benchmark; done
+
+echo "Start the game with : java -XX:SharedArchiveFile=$ARCHIVE -cp $JAR main.App"
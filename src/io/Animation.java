@@ -0,0 +1,34 @@
+package io;
+
+import java.awt.Graphics2D;
+
+/**
+ * Une scène animée dessinée dans une zone de la fenêtre (voir
+ * {@link Fenetre#ajouterZoneAnimee(String, Animation, int, int)}).
+ *
+ * Les deux fonctions sont exécutées par le thread d'animation de la zone, et
+ * non par celui de l'interface graphique : l'état partagé avec l'auditeur de la
+ * fenêtre doit être protégé (par exemple avec {@code synchronized}).
+ */
+public interface Animation {
+
+	/**
+	 * Fonction exécutée à intervalle fixe pour faire avancer la scène.
+	 *
+	 * @param dureeEnSecondes la durée du pas, toujours la même
+	 */
+	void mettreAJour(double dureeEnSecondes);
+
+	/**
+	 * Fonction exécutée pour dessiner chaque image de la scène.
+	 *
+	 * @param graphique     la surface sur laquelle dessiner (déjà effacée)
+	 * @param interpolation la fraction du pas suivant déjà écoulée (entre 0 et 1),
+	 *                      pour dessiner les objets mobiles entre leur position
+	 *                      actuelle et la suivante
+	 * @param largeur       la largeur de la zone en pixels
+	 * @param hauteur       la hauteur de la zone en pixels
+	 */
+	void dessiner(Graphics2D graphique, double interpolation, int largeur, int hauteur);
+
+}
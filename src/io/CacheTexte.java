@@ -0,0 +1,91 @@
+package io;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cette classe garde la mise en forme ({@link TextLayout}) des derniers textes
+ * dessinés, pour ne pas la recalculer à chaque affichage d'un même texte. Les
+ * textes les moins récemment utilisés sont oubliés lorsque le cache est plein.
+ *
+ * @author Erwin Redoté
+ * @version 1.0
+ */
+final class CacheTexte {
+
+	private static final Metrics.Counter SUCCES = Metrics.counter("fenetre.text.hit");
+	private static final Metrics.Counter ECHECS = Metrics.counter("fenetre.text.miss");
+
+	private final Map<Cle, TextLayout> miseEnFormes;
+
+	/**
+	 * Crée un cache vide.
+	 *
+	 * @param capacite le nombre maximum de textes gardés
+	 */
+	CacheTexte(int capacite) {
+		miseEnFormes = new LinkedHashMap<Cle, TextLayout>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Cle, TextLayout> plusAncienne) {
+				return size() > capacite;
+			}
+		};
+	}
+
+	/**
+	 * Retourne la mise en forme d'un texte, calculée si elle n'est pas dans le
+	 * cache.
+	 *
+	 * @param texte    le texte (non vide)
+	 * @param police   la police du texte
+	 * @param contexte le contexte de rendu du composant qui dessine le texte
+	 * @return la mise en forme du texte
+	 */
+	synchronized TextLayout get(String texte, Font police, FontRenderContext contexte) {
+		Cle cle = new Cle(texte, police, contexte);
+		TextLayout miseEnForme = miseEnFormes.get(cle);
+		if (miseEnForme == null) {
+			miseEnForme = new TextLayout(texte, police, contexte);
+			miseEnFormes.put(cle, miseEnForme);
+			ECHECS.increment();
+		} else {
+			SUCCES.increment();
+		}
+		return miseEnForme;
+	}
+
+	private static final class Cle {
+
+		private final String texte;
+		private final Font police;
+		private final FontRenderContext contexte;
+		private final int hash;
+
+		private Cle(String texte, Font police, FontRenderContext contexte) {
+			this.texte = texte;
+			this.police = police;
+			this.contexte = contexte;
+			this.hash = Objects.hash(texte, police, contexte);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object autre) {
+			if (!(autre instanceof Cle)) {
+				return false;
+			}
+			Cle cle = (Cle) autre;
+			return texte.equals(cle.texte) && police.equals(cle.police) && contexte.equals(cle.contexte);
+		}
+	}
+}
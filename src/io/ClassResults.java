@@ -0,0 +1,146 @@
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * This class keeps the results of a class from one run to another, in a file shared by
+ * every game (e.g : several computers using the same network drive).
+ *
+ * A game reads the file when it starts and adds its own results when it ends (See
+ * {@link #update(Consumer)}) : the file is read again under a lock, so the results added by
+ * the other games in the meantime are kept, and the new version is written aside then moved
+ * in place, so a reader never sees a half written file.
+ *
+ * The words are identified by the hash of their line (See {@link Dictionary#getEntryHash(int)}) :
+ * they are found again even if the dictionary changed.
+ * @author Erwin Redoté
+ */
+public class ClassResults {
+
+	private static final int MAGIC = 0x564F4352;
+	private static final int VERSION = 1;
+
+	private final Path path, lock;
+
+	/**
+	 * Use the results stored in the specified file (It's created by the first {@link #update(Consumer)}).
+	 * @param filePath the path of the file (relative to the project, e.g : "data/class.bin")
+	 */
+	public ClassResults(String filePath) {
+		this.path = Dictionary.resolve(filePath);
+		this.lock = path.resolveSibling(path.getFileName() + ".lock");
+	}
+
+	/**
+	 * Read the stored results.
+	 * @return the results, empty if nothing was stored yet
+	 * @throws IOException if the file can't be read, or isn't a results file
+	 */
+	public Snapshot read() throws IOException {
+		Snapshot snapshot = new Snapshot();
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (input.readInt() != MAGIC || input.readByte() != VERSION) throw new IOException("The file " + path + " isn't a results file");
+			snapshot.sessions = input.readLong();
+			snapshot.points = input.readLong();
+			snapshot.questions = input.readLong();
+			for (int i = input.readInt(); i > 0; i--) {
+				snapshot.scores.add(new Score(input.readUTF(), input.readInt(), input.readInt(), input.readLong()));
+			}
+			for (int i = input.readInt(); i > 0; i--) {
+				snapshot.words.put(input.readLong(), new long[] { input.readLong(), input.readLong() });
+			}
+		} catch (NoSuchFileException e) {
+			// Nothing stored yet
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Change the stored results : the file is locked, read, given to {@code changes}, then replaced.
+	 * The games sharing the file wait for each other (Within a JVM, a single instance must be used).
+	 * @param changes adds the new results to the stored ones
+	 * @throws IOException if the file can't be read or written (It's then unchanged)
+	 */
+	public synchronized void update(Consumer<Snapshot> changes) throws IOException {
+		if (path.getParent() != null) Files.createDirectories(path.getParent());
+		try (FileChannel channel = FileChannel.open(lock, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			/* Released when the channel is closed */
+			channel.lock();
+			Snapshot snapshot = read();
+			changes.accept(snapshot);
+			Path written = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+			try {
+				write(written, snapshot);
+				Files.move(written, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(written);
+			}
+		}
+	}
+
+	private static void write(Path file, Snapshot snapshot) throws IOException {
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			output.writeInt(MAGIC);
+			output.writeByte(VERSION);
+			output.writeLong(snapshot.sessions);
+			output.writeLong(snapshot.points);
+			output.writeLong(snapshot.questions);
+			output.writeInt(snapshot.scores.size());
+			for (Score score : snapshot.scores) {
+				output.writeUTF(score.learner);
+				output.writeInt(score.points);
+				output.writeInt(score.questions);
+				output.writeLong(score.durationMs);
+			}
+			output.writeInt(snapshot.words.size());
+			for (Map.Entry<Long, long[]> word : snapshot.words.entrySet()) {
+				output.writeLong(word.getKey());
+				output.writeLong(word.getValue()[0]);
+				output.writeLong(word.getValue()[1]);
+			}
+		}
+	}
+
+	/**
+	 * The results of the class : the totals, the best scores (from the best one) and the
+	 * answers by word (hash of the entry : attempts, errors).
+	 */
+	public static final class Snapshot {
+
+		public long sessions, points, questions;
+		public final List<Score> scores = new ArrayList<Score>();
+		public final Map<Long, long[]> words = new HashMap<Long, long[]>();
+	}
+
+	/**
+	 * The score of a session.
+	 */
+	public static final class Score {
+
+		public final String learner;
+		public final int points, questions;
+		public final long durationMs;
+
+		public Score(String learner, int points, int questions, long durationMs) {
+			this.learner = learner != null ? learner : "";
+			this.points = points;
+			this.questions = questions;
+			this.durationMs = durationMs;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class keeps a list of lines compressed in memory.
+ *
+ * The lines are grouped in blocks of {@value #BLOCK_SIZE} lines, and each block is
+ * compressed on its own. To compress well such small blocks, they all share a preset
+ * dictionary made of a sample of the lines (Vocabulary lists repeat the same words a
+ * lot : "I am", "I come", "he is" ...). Reading a line only decompresses its block, and
+ * the last decompressed blocks are kept in a small cache.
+ * @author Erwin Redoté
+ */
+final class CompressedLines extends AbstractList<String> implements RandomAccess {
+
+	static final int BLOCK_SIZE = 64;
+	private static final int DICTIONARY_SIZE = 8 * 1024;
+	private static final int CACHE_SIZE = 32;
+	private static final Metrics.Counter DECOMPRESSIONS = Metrics.counter("dictionary.block.decompress");
+
+	private final int size;
+	private final byte[] presetDictionary;
+	private final byte[] data;
+	private final int[] offsets;
+	private final int[] lengths;
+	private final Block[] cache = new Block[CACHE_SIZE];
+	private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+	/**
+	 * Compress the specified lines.
+	 * @param lines the lines
+	 */
+	CompressedLines(List<String> lines) {
+		this.size = lines.size();
+		this.presetDictionary = sample(lines);
+		int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		this.offsets = new int[blocks + 1];
+		this.lengths = new int[blocks];
+
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		byte[] compressed = new byte[Math.max(1024, size * 8)];
+		byte[] buffer = new byte[4096];
+		int position = 0;
+		for (int block = 0; block < blocks; block++) {
+			byte[] text = String.join("\n", lines.subList(block * BLOCK_SIZE, Math.min(size, (block + 1) * BLOCK_SIZE)))
+					.getBytes(StandardCharsets.UTF_8);
+			lengths[block] = text.length;
+			offsets[block] = position;
+			deflater.reset();
+			deflater.setDictionary(presetDictionary);
+			deflater.setInput(text);
+			deflater.finish();
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				if (position + count > compressed.length) compressed = Arrays.copyOf(compressed, (position + count) * 2);
+				System.arraycopy(buffer, 0, compressed, position, count);
+				position += count;
+			}
+		}
+		deflater.end();
+		offsets[blocks] = position;
+		this.data = Arrays.copyOf(compressed, position);
+	}
+
+	@Override
+	public String get(int index) {
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+		int block = index / BLOCK_SIZE;
+		Block cached = cache[block % CACHE_SIZE];
+		if (cached == null || cached.index != block) {
+			cached = new Block(block, decompress(block));
+			/* Several threads may replace the same slot, each of them gets a complete block */
+			cache[block % CACHE_SIZE] = cached;
+		}
+		return cached.lines[index % BLOCK_SIZE];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the memory used by the compressed lines.
+	 * @return the approximate size in bytes
+	 */
+	long getCompressedBytes() {
+		return data.length + presetDictionary.length + 4L * (offsets.length + lengths.length);
+	}
+
+	private String[] decompress(int block) {
+		Inflater inflater = inflaters.get();
+		inflater.reset();
+		inflater.setInput(data, offsets[block], offsets[block + 1] - offsets[block]);
+		byte[] text = new byte[lengths[block]];
+		try {
+			int position = 0;
+			while (position < text.length) {
+				int count = inflater.inflate(text, position, text.length - position);
+				if (count == 0 && inflater.needsDictionary()) inflater.setDictionary(presetDictionary);
+				else if (count == 0 && (inflater.finished() || inflater.needsInput())) break;
+				position += count;
+			}
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Corrupted block " + block, e);
+		}
+		DECOMPRESSIONS.increment();
+		int count = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+		String[] lines = new String[count];
+		String joined = new String(text, StandardCharsets.UTF_8);
+		int start = 0;
+		for (int i = 0; i < count; i++) {
+			int end = i == count - 1 ? joined.length() : joined.indexOf('\n', start);
+			lines[i] = joined.substring(start, end);
+			start = end + 1;
+		}
+		return lines;
+	}
+
+	/**
+	 * Build the preset dictionary from lines taken all over the list.
+	 * The most useful content must be at the end of the dictionary, so the sample is built backwards.
+	 */
+	private static byte[] sample(List<String> lines) {
+		StringBuilder builder = new StringBuilder();
+		int step = Math.max(1, lines.size() / 1024);
+		for (int i = 0; i < lines.size() && builder.length() < DICTIONARY_SIZE; i += step) {
+			builder.append(lines.get(i)).append('\n');
+		}
+		byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+		return bytes.length <= DICTIONARY_SIZE ? bytes : Arrays.copyOfRange(bytes, bytes.length - DICTIONARY_SIZE, bytes.length);
+	}
+
+	/**
+	 * A decompressed block.
+	 */
+	private static final class Block {
+
+		private final int index;
+		private final String[] lines;
+
+		private Block(int index, String[] lines) {
+			this.index = index;
+			this.lines = lines;
+		}
+	}
+}
@@ -5,8 +5,18 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
 
 /**
  * This class represents a dictionary of words.
@@ -15,19 +25,265 @@ import java.util.List;
  * Inpired by the class Dictionnaire of the course "Programmation de Base" by M. Comblin.
  * 
  * I've changed it to make it Oriented Object. That's allow to make multiple dictionaries.
+ * A dictionary is never modified once loaded (See {@link DictionaryWatcher} to follow the changes of its file).
+ * 
+ * Each line contains the translations of a word separated by ", ", in the languages declared by the
+ * first line of the file (See {@link #getLanguages()}). The words are stored by language (One column
+ * per language) : a quiz between two languages only reads their two columns.
  * @author Erwin Redoté
  * @author Arnaud Comblin
  */
 public class Dictionary {
 
+	public static final String[] DEFAULT_LANGUAGES = { "ANGLAIS", "FRANCAIS" };
+	private static final Pattern SEPARATOR = Pattern.compile("\\s*,\\s*");
+
+	private static final Metrics.Timer LOAD = Metrics.timer("dictionary.load");
+	private static final Metrics.Timer LOOKUP = Metrics.timer("dictionary.lookup");
+	private static final Metrics.Counter REUSED = Metrics.counter("dictionary.reused");
+
 	private final List<String> WORDS;
+	private final String[] languages;
+	private final long[] hashes;
+	private final long versionHash;
+	private final String[][] columns;
+	private final AtomicReferenceArray<String[]> keys;
+	private final int[] ids;
+	private final int[] indexesById;
+	private final IdRuns idRuns;
+	private final int nextId;
+	/* Built the first time a word is searched (See getSearchIndex()) */
+	private volatile TrigramIndex searchIndex;
+	private final ShardStore shards;
 
 	/**
 	 * Create a new dictionary from the specified file.
 	 * @param filePath the path of the file (relative to the project, e.g : "data/vocabulary.txt")
 	 */
 	public Dictionary(String filePath) {
-		WORDS = readLines(filePath, StandardCharsets.UTF_8);
+		this(filePath, null);
+	}
+
+	/**
+	 * Create a new version of a dictionary from the specified file.
+	 * 
+	 * The lines that didn't change since the previous version aren't parsed again, and
+	 * they keep their identifier (See {@link #getId(int)}) even if lines have been
+	 * inserted or removed before them.
+	 * @param filePath the path of the file (relative to the project, e.g : "data/vocabulary.txt")
+	 * @param previous the previous version of the dictionary, or null to parse every line
+	 */
+	public Dictionary(String filePath, Dictionary previous) {
+		this(filePath, previous, previous != null && previous.isCompressed());
+	}
+
+	/**
+	 * Create a new version of a dictionary from the specified file, optionally compressed in memory.
+	 * 
+	 * A compressed dictionary keeps its lines in blocks of 64 lines compressed independently
+	 * (See {@link CompressedLines}) : it uses several times less memory, and reading a word only
+	 * decompresses its block. The words and their keys are then extracted from the line when needed.
+	 * @param filePath the path of the file (relative to the project, e.g : "data/vocabulary.txt")
+	 * @param previous the previous version of the dictionary, or null to parse every line
+	 * @param compressed true to compress the lines in memory
+	 */
+	public Dictionary(String filePath, Dictionary previous, boolean compressed) {
+		FlightEvents.DictionaryLoad event = new FlightEvents.DictionaryLoad();
+		event.begin();
+		long start = Metrics.start();
+		List<String> lines = readLines(filePath, StandardCharsets.UTF_8);
+		boolean header = !lines.isEmpty() && lines.get(0).startsWith("#");
+		languages = header ? parseHeader(lines.get(0)) : DEFAULT_LANGUAGES.clone();
+		lines = header ? lines.subList(1, lines.size()) : lines;
+		if (previous != null && (previous.shards != null || !Arrays.equals(languages, previous.languages))) previous = null;
+		shards = null;
+
+		int size = lines.size();
+		hashes = new long[size];
+		WORDS = compressed ? new CompressedLines(lines) : lines;
+		columns = compressed ? null : new String[languages.length][size];
+		keys = new AtomicReferenceArray<String[]>(languages.length);
+		ids = new int[size];
+		int[] origins = new int[size];
+		Arrays.fill(origins, -1);
+		int reused = previous == null ? 0 : reuse(previous, origins);
+		if (previous == null) {
+			for (int i = 0; i < size; i++) hashes[i] = hash(lines.get(i));
+		}
+		versionHash = combine(hash(String.join(", ", languages)), hashes);
+		int nextId = previous == null ? 0 : previous.nextId;
+
+		List<Map<String, String>> pools = new ArrayList<Map<String, String>>();
+		for (int j = 0; j < languages.length; j++) pools.add(new HashMap<String, String>());
+		for (int i = 0; i < size; i++) {
+			if (origins[i] >= 0) continue;
+			ids[i] = nextId++;
+			if (compressed) continue;
+			String[] words = parse(lines.get(i));
+			for (int j = 0; j < languages.length; j++) {
+				String word = j < words.length ? words[j] : "";
+				columns[j][i] = pools.get(j).computeIfAbsent(word, pooled -> pooled);
+			}
+		}
+		indexesById = new int[nextId];
+		Arrays.fill(indexesById, -1);
+		for (int i = 0; i < size; i++) indexesById[ids[i]] = i;
+		idRuns = null;
+		this.nextId = nextId;
+		if (previous != null && !compressed) reuseKeys(previous, origins);
+		REUSED.add(reused);
+		LOAD.record(start);
+		event.end();
+		if (event.shouldCommit()) {
+			event.file = filePath;
+			event.entries = size;
+			event.reused = reused;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Open a very large dictionary without loading it in memory.
+	 * 
+	 * The lines are grouped in shards of {@code shardSize} lines, which are read from a private copy
+	 * of the file the first time one of their lines is needed. When the loaded shards use more than
+	 * {@code memoryCap} bytes, the least recently used ones are forgotten (They will be read again if needed).
+	 * Such a dictionary has no search index (The search reads the whole file). Nothing is kept in memory
+	 * per line : only the position and the hash of each shard, and the identifiers as runs of consecutive
+	 * lines (See {@link IdRuns}).
+	 * @param filePath the path of the file (relative to the project, e.g : "data/vocabulary.txt")
+	 * @param shardSize the number of lines of a shard (e.g : 10000)
+	 * @param memoryCap the approximate memory the loaded shards may use, in bytes
+	 */
+	public Dictionary(String filePath, int shardSize, long memoryCap) {
+		this(filePath, shardSize, memoryCap, null);
+	}
+
+	/**
+	 * Open a new version of a very large dictionary (See {@link #Dictionary(String, int, long)}).
+	 * 
+	 * The lines that didn't change since the previous version keep their identifier, they are
+	 * recognized by their hash (The lines aren't compared). The common beginning of both versions
+	 * is skipped by shards, without reading them.
+	 * @param filePath the path of the file (relative to the project, e.g : "data/vocabulary.txt")
+	 * @param shardSize the number of lines of a shard (e.g : 10000)
+	 * @param memoryCap the approximate memory the loaded shards may use, in bytes
+	 * @param previous the previous version of the dictionary, or null
+	 */
+	public Dictionary(String filePath, int shardSize, long memoryCap, Dictionary previous) {
+		FlightEvents.DictionaryLoad event = new FlightEvents.DictionaryLoad();
+		event.begin();
+		long start = Metrics.start();
+		ShardStore store;
+		try {
+			store = new ShardStore(resolve(filePath), shardSize, memoryCap);
+		} catch (IOException e) {
+			store = null;
+			System.err.printf("Error during file reading (%s). Creating empty list.\n", filePath);
+			e.printStackTrace();
+		}
+		shards = store;
+		languages = store != null ? store.getLanguages() : DEFAULT_LANGUAGES.clone();
+		if (previous != null && (previous.shards == null || !Arrays.equals(languages, previous.languages))) previous = null;
+		WORDS = Collections.emptyList();
+		hashes = store != null ? null : new long[0];
+		versionHash = store != null ? store.getVersionHash() : hash(String.join(", ", languages));
+		columns = null;
+		keys = new AtomicReferenceArray<String[]>(languages.length);
+
+		int size = size(), reused = 0;
+		IdRuns runs = store != null ? new IdRuns() : null;
+		if (runs != null && previous != null) {
+			reused = reuseShards(previous, runs);
+		} else if (runs != null) {
+			for (int i = 0; i < size; i++) runs.add(i, i);
+		}
+		ids = store != null ? null : new int[0];
+		indexesById = ids;
+		idRuns = runs != null ? runs.freeze() : null;
+		nextId = (previous == null ? 0 : previous.nextId) + size - reused;
+		REUSED.add(reused);
+		LOAD.record(start);
+		event.end();
+		if (event.shouldCommit()) {
+			event.file = filePath;
+			event.entries = size;
+			event.reused = reused;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Return true if the dictionary is read from its file when needed (See {@link #Dictionary(String, int, long)}).
+	 * @return true if the dictionary is sharded
+	 */
+	public boolean isSharded() {
+		return shards != null;
+	}
+
+	/**
+	 * Return true if the lines of the dictionary are compressed in memory (See {@link #Dictionary(String, Dictionary, boolean)}).
+	 * @return true if the dictionary is compressed
+	 */
+	public boolean isCompressed() {
+		return WORDS instanceof CompressedLines;
+	}
+
+	/**
+	 * Return the memory used by the compressed lines of a compressed dictionary.
+	 * @return the approximate size in bytes, or 0 if the dictionary isn't compressed
+	 */
+	public long getCompressedBytes() {
+		return isCompressed() ? ((CompressedLines) WORDS).getCompressedBytes() : 0;
+	}
+
+	/**
+	 * Return the approximate memory used by the loaded shards of a sharded dictionary.
+	 * @return the size in bytes, or 0 if the dictionary isn't sharded
+	 */
+	public long getResidentBytes() {
+		return shards != null ? shards.getResidentBytes() : 0;
+	}
+
+	/**
+	 * Return a hash of the content of this version of the dictionary, to check that a file is
+	 * still the one a session was played with.
+	 * @return the hash
+	 */
+	public long getVersionHash() {
+		return versionHash;
+	}
+
+	/**
+	 * Load a new version of this dictionary, the same way it has been loaded.
+	 * @param filePath the path of the file
+	 * @return the new version
+	 */
+	Dictionary reload(String filePath) {
+		if (shards != null) return new Dictionary(filePath, shards.getShardSize(), shards.getMemoryCap(), this);
+		return new Dictionary(filePath, this, isCompressed());
+	}
+
+	/**
+	 * Return the languages of the dictionary, in the order of its columns.
+	 * They are declared by the first line of the file, e.g : "# ANGLAIS, FRANCAIS, ESPAGNOL".
+	 * A file without this line has the columns {@link #DEFAULT_LANGUAGES}.
+	 * @return the names of the languages
+	 */
+	public String[] getLanguages() {
+		return languages.clone();
+	}
+
+	/**
+	 * Return the column of the specified language.
+	 * @param language the name of the language (e.g : "FRANCAIS"), the case is ignored
+	 * @return the column, or -1 if the dictionary doesn't contain this language
+	 */
+	public int getColumn(String language) {
+		for (int i = 0; i < languages.length; i++) {
+			if (languages[i].equalsIgnoreCase(language)) return i;
+		}
+		return -1;
 	}
 
 	/**
@@ -37,12 +293,128 @@ public class Dictionary {
 	 */
 	public String getWord(int line) {
 		String word = "Unknown,Inconnu";
-		if (line >= 0 && line < size()) word = WORDS.get(line);
+		if (line >= 0 && line < size()) word = shards != null ? shards.getLine(line) : WORDS.get(line);
 		return word;
 	}
+
+	/**
+	 * Return the word of a language at the specified line.
+	 * Only the column of this language is read.
+	 * @param line the line number
+	 * @param column the column of the language (See {@link #getColumn(String)})
+	 * @return the word, or an empty string if the line or the column doesn't exist
+	 */
+	public String getWord(int line, int column) {
+		long start = Metrics.start();
+		String word = readWord(line, column);
+		LOOKUP.record(start);
+		return word;
+	}
+
+	private String readWord(int line, int column) {
+		if (line < 0 || line >= size() || column < 0 || column >= languages.length) return "";
+		if (shards != null) return shards.getWord(line, column);
+		if (columns == null) {
+			String[] words = parse(WORDS.get(line));
+			return column < words.length ? words[column] : "";
+		}
+		return columns[column][line];
+	}
 	
 	public String[] getWords(int line) {
-		return getWord(line).split(", ");
+		long start = Metrics.start();
+		String[] words;
+		if (line >= 0 && line < size()) {
+			words = new String[languages.length];
+			for (int j = 0; j < languages.length; j++) words[j] = readWord(line, j);
+		} else {
+			words = parse(getWord(line));
+		}
+		LOOKUP.record(start);
+		return words;
+	}
+
+	/**
+	 * Return the folded key of a word, computed once per language, when it's first needed.
+	 * The answers must be folded with a {@link TextFolder} before being compared to it.
+	 * @param line the line number
+	 * @param column the column of the word (See {@link #getColumn(String)})
+	 * @return the key of the word, or null if the word doesn't exist
+	 */
+	public String getKey(int line, int column) {
+		long start = Metrics.start();
+		String key = readKey(line, column);
+		LOOKUP.record(start);
+		return key;
+	}
+
+	private String readKey(int line, int column) {
+		if (line < 0 || line >= size() || column < 0 || column >= languages.length) return null;
+		if (shards != null) return shards.getKey(line, column);
+		if (columns == null) return new TextFolder().fold(readWord(line, column));
+		String[] columnKeys = keys.get(column);
+		if (columnKeys == null) columnKeys = foldColumn(column, null, null);
+		return columnKeys[line];
+	}
+
+	/**
+	 * Return the identifier of the entry at the specified line.
+	 * An identifier stays the same across the versions of a dictionary as long as the line isn't modified
+	 * (See {@link #Dictionary(String, Dictionary)}).
+	 * @param line the line number
+	 * @return the identifier of the entry, or -1 if the line doesn't exist
+	 */
+	public int getId(int line) {
+		if (line < 0 || line >= size()) return -1;
+		return idRuns != null ? idRuns.getId(line) : ids[line];
+	}
+
+	/**
+	 * Return the line of the entry with the specified identifier.
+	 * @param id the identifier of the entry
+	 * @return the line number, or -1 if the entry isn't in this version of the dictionary
+	 */
+	public int getLine(int id) {
+		if (idRuns != null) return id >= 0 && id < nextId ? idRuns.getLine(id) : -1;
+		return id >= 0 && id < indexesById.length ? indexesById[id] : -1;
+	}
+
+	/**
+	 * Return the hash of the entry at the specified line. Unlike its identifier, it only depends on the
+	 * text of the line : it finds the same entry again in another run, or in another dictionary.
+	 * @param line the line number
+	 * @return the hash of the line, or 0 if the line doesn't exist
+	 */
+	public long getEntryHash(int line) {
+		if (line < 0 || line >= size()) return 0;
+		return shards != null ? shards.getHash(line) : hashes[line];
+	}
+
+	/**
+	 * Return the lines containing the specified fragment, in any language (The case is ignored).
+	 * @param fragment the text to find (e.g : "cha" finds "cat, chat" and "chair, chaise")
+	 * @param limit the maximum number of lines to return
+	 * @return the line numbers, in ascending order
+	 */
+	public int[] search(String fragment, int limit) {
+		return shards != null ? shards.search(fragment, limit) : getSearchIndex().search(fragment, limit);
+	}
+
+	/**
+	 * Return the index used by {@link #search(String, int)} (e.g : to know its memory cost).
+	 * The index is built the first time it's needed : a version that is never searched (e.g : replaced
+	 * by a reload before) doesn't index its lines.
+	 * @return the search index, or null if the dictionary is sharded
+	 */
+	public TrigramIndex getSearchIndex() {
+		if (shards != null) return null;
+		TrigramIndex index = searchIndex;
+		return index != null ? index : buildSearchIndex();
+	}
+
+	private synchronized TrigramIndex buildSearchIndex() {
+		if (searchIndex == null) searchIndex = new TrigramIndex(WORDS);
+		return searchIndex;
 	}
 
 	/**
@@ -50,14 +422,192 @@ public class Dictionary {
 	 * @return
 	 */
 	public int size() {
-		return WORDS.size();
+		return shards != null ? shards.size() : WORDS.size();
+	}
+
+	/**
+	 * Take the parsed entries of the previous version for the lines that are unchanged.
+	 * The common beginning and end of both versions are compared line by line and keep their
+	 * hash, only the lines in between are hashed and matched by their hash (That handles
+	 * insertions, removals and moves).
+	 * @param origins receives, for each line, its line in the previous version (-1 if it's new)
+	 * @return the number of reused entries
+	 */
+	private int reuse(Dictionary previous, int[] origins) {
+		int size = size(), previousSize = previous.size();
+		int prefix = 0;
+		while (prefix < size && prefix < previousSize && previous.WORDS.get(prefix).equals(WORDS.get(prefix))) {
+			take(previous, prefix, prefix, origins);
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < size - prefix && suffix < previousSize - prefix
+				&& previous.WORDS.get(previousSize - 1 - suffix).equals(WORDS.get(size - 1 - suffix))) {
+			take(previous, previousSize - 1 - suffix, size - 1 - suffix, origins);
+			suffix++;
+		}
+		int reused = prefix + suffix;
+		if (prefix + suffix == size) return reused;
+
+		for (int i = prefix; i < size - suffix; i++) hashes[i] = hash(WORDS.get(i));
+		Map<Long, Deque<Integer>> candidates = new HashMap<Long, Deque<Integer>>();
+		for (int i = prefix; i < previousSize - suffix; i++) {
+			candidates.computeIfAbsent(previous.hashes[i], hash -> new ArrayDeque<Integer>()).add(i);
+		}
+		for (int i = prefix; i < size - suffix; i++) {
+			Deque<Integer> lines = candidates.get(hashes[i]);
+			if (lines == null) continue;
+			for (Iterator<Integer> iterator = lines.iterator(); iterator.hasNext();) {
+				int line = iterator.next();
+				if (previous.sameLine(line, this, i)) {
+					iterator.remove();
+					take(previous, line, i, origins);
+					reused++;
+					break;
+				}
+			}
+		}
+		return reused;
+	}
+
+	/**
+	 * Give their identifiers to the lines of a sharded version, like {@link #reuse(Dictionary, int[])} : the common
+	 * beginning of both versions is skipped by whole shards while their hashes are the same, the common end is
+	 * compared line by line, and only the lines in between are kept in memory to be matched by their hash.
+	 * @param runs receives the identifier of each line, the new lines get the next identifiers
+	 * @return the number of reused entries
+	 */
+	private int reuseShards(Dictionary previous, IdRuns runs) {
+		ShardStore old = previous.shards;
+		int size = size(), previousSize = previous.size(), shardSize = shards.getShardSize();
+		boolean sameShards = old.getShardSize() == shardSize;
+		int prefix = 0;
+		while (prefix < size && prefix < previousSize) {
+			int shard = prefix / shardSize;
+			if (sameShards && prefix % shardSize == 0 && (shard + 1) * shardSize <= Math.min(size, previousSize)
+					&& shards.getShardHash(shard) == old.getShardHash(shard)) {
+				prefix += shardSize;
+			} else if (shards.getHash(prefix) == old.getHash(prefix)) {
+				prefix++;
+			} else {
+				break;
+			}
+		}
+		int suffix = 0;
+		while (suffix < size - prefix && suffix < previousSize - prefix
+				&& shards.getHash(size - 1 - suffix) == old.getHash(previousSize - 1 - suffix)) {
+			suffix++;
+		}
+
+		Map<Long, Deque<Integer>> candidates = new HashMap<Long, Deque<Integer>>();
+		for (int i = prefix; i < previousSize - suffix; i++) {
+			candidates.computeIfAbsent(old.getHash(i), hash -> new ArrayDeque<Integer>()).add(i);
+		}
+		int reused = prefix + suffix, nextId = previous.nextId;
+		for (int i = 0; i < prefix; i++) runs.add(i, previous.getId(i));
+		for (int i = prefix; i < size - suffix; i++) {
+			Deque<Integer> lines = candidates.get(shards.getHash(i));
+			Integer line = lines != null ? lines.poll() : null;
+			if (line != null) reused++;
+			runs.add(i, line != null ? previous.getId(line) : nextId++);
+		}
+		for (int i = size - suffix; i < size; i++) runs.add(i, previous.getId(previousSize - size + i));
+		return reused;
+	}
+
+	private boolean sameLine(int line, Dictionary other, int otherLine) {
+		return hashes[line] == other.hashes[otherLine] && WORDS.get(line).equals(other.WORDS.get(otherLine));
+	}
+
+	private void take(Dictionary previous, int previousLine, int line, int[] origins) {
+		if (columns != null) {
+			for (int j = 0; j < columns.length; j++) columns[j][line] = previous.columns[j][previousLine];
+		}
+		ids[line] = previous.ids[previousLine];
+		hashes[line] = previous.hashes[previousLine];
+		origins[line] = previousLine;
+	}
+
+	/**
+	 * Compute the keys of the languages whose keys were already computed by the previous version,
+	 * reusing them for the unchanged lines.
+	 */
+	private void reuseKeys(Dictionary previous, int[] origins) {
+		for (int j = 0; j < columns.length; j++) {
+			String[] previousKeys = previous.keys.get(j);
+			if (previousKeys != null) foldColumn(j, previousKeys, origins);
+		}
+	}
+
+	/**
+	 * Fold every word of a column (See {@link TextFolder}).
+	 * @param previousKeys the keys of the previous version to reuse, or null
+	 * @param origins the lines of the previous version (See {@link #reuse(Dictionary, int[])}), or null
+	 * @return the keys of the column
+	 */
+	private String[] foldColumn(int column, String[] previousKeys, int[] origins) {
+		TextFolder folder = new TextFolder();
+		String[] words = columns[column];
+		String[] folded = new String[words.length];
+		for (int i = 0; i < words.length; i++) {
+			boolean unchanged = previousKeys != null && origins[i] >= 0;
+			folded[i] = unchanged ? previousKeys[origins[i]] : folder.fold(words[i]);
+		}
+		/* Another thread may have folded the column in the meantime, keep its keys in that case */
+		return keys.compareAndSet(column, null, folded) ? folded : keys.get(column);
+	}
+
+	static String[] parse(String line) {
+		/* Same result as line.split(", "), without compiling a regular expression for each line */
+		int count = 1;
+		for (int i = line.indexOf(", "); i >= 0; i = line.indexOf(", ", i + 2)) count++;
+		String[] words = new String[count];
+		int start = 0;
+		for (int i = 0; i < count - 1; i++) {
+			int end = line.indexOf(", ", start);
+			words[i] = line.substring(start, end);
+			start = end + 2;
+		}
+		words[count - 1] = line.substring(start);
+		while (count > 1 && words[count - 1].isEmpty()) count--;
+		return count == words.length ? words : Arrays.copyOf(words, count);
+	}
+
+	static String[] parseHeader(String line) {
+		List<String> names = new ArrayList<String>();
+		for (String name : line.substring(1).split(",")) {
+			name = name.trim();
+			if (!name.isEmpty()) names.add(name.toUpperCase());
+		}
+		return names.isEmpty() ? DEFAULT_LANGUAGES.clone() : names.toArray(new String[names.size()]);
+	}
+
+	static long combine(long hash, long[] values) {
+		for (long value : values) hash = combine(hash, value);
+		return hash;
+	}
+
+	static long combine(long hash, long value) {
+		return (hash ^ value) * 0x100000001b3L;
+	}
+
+	static long hash(String line) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < line.length(); i++) {
+			hash = (hash ^ line.charAt(i)) * 0x100000001b3L;
+		}
+		return hash;
 	}
 	
+	static Path resolve(String filePath) {
+		return Path.of(System.getProperty("user.dir")+"/"+filePath);
+	}
+
 	private static List<String> readLines(String filePath, Charset encoding) {
 		List<String> lines;
-		Path path = Path.of(System.getProperty("user.dir")+"/"+filePath);
+		Path path = resolve(filePath);
 	    try {
-			lines = Files.readAllLines(path, encoding);
+			lines = Collections.unmodifiableList(clean(Files.readAllLines(path, encoding), filePath));
 		} catch (IOException e) {
 			lines = new LinkedList<String>();
 			System.err.printf("Error during file reading (%s). Creating empty list.\n", filePath);
@@ -65,4 +615,54 @@ public class Dictionary {
 		}
 	    return lines;
 	}
+
+	/**
+	 * Remove what a text editor may leave in the file : the byte order mark, blank lines and
+	 * spaces around the lines. A separator written without its space or with extra spaces
+	 * ("cat,chat", "cat ,  chat") is accepted, the lines without any separator are ignored.
+	 * Only the first line may be the header, a later line starting with "#" is an entry like the others.
+	 * @param lines the lines of the file
+	 * @param filePath the path of the file (for the warning)
+	 * @return the lines to use
+	 */
+	private static List<String> clean(List<String> lines, String filePath) {
+		List<String> cleaned = new ArrayList<String>(lines.size());
+		int ignored = 0;
+		for (String text : lines) {
+			String line = cleanLine(text, cleaned.isEmpty());
+			if (line == null) ignored++;
+			else if (!line.isEmpty()) cleaned.add(line);
+		}
+		warnIgnored(ignored, filePath);
+		return cleaned;
+	}
+
+	/**
+	 * Clean a line of the file (See {@link #clean(List, String)}).
+	 * @param line the line, without its end of line
+	 * @param first true if no line was kept before it : it may be the header (e.g : "# ANGLAIS, FRANCAIS")
+	 * @return the line to use, an empty line to skip, or null if the line has no separator
+	 */
+	static String cleanLine(String line, boolean first) {
+		if (!line.isEmpty() && line.charAt(0) == '\uFEFF') line = line.substring(1);
+		line = line.strip();
+		if (line.isEmpty() || first && line.startsWith("#")) return line;
+		if (line.indexOf(',') < 0) return null;
+		return wellSeparated(line) ? line : SEPARATOR.matcher(line).replaceAll(", ");
+	}
+
+	/* Tell the teacher that some lines of the file aren't in the dictionary */
+	static void warnIgnored(int ignored, Object file) {
+		if (ignored > 0) System.err.printf("%d line(s) without \", \" ignored in %s.\n", ignored, file);
+	}
+
+	/* True if every comma is followed by exactly one space and not preceded by a space */
+	private static boolean wellSeparated(String line) {
+		for (int i = line.indexOf(','); i >= 0; i = line.indexOf(',', i + 1)) {
+			boolean spaceBefore = i > 0 && Character.isWhitespace(line.charAt(i - 1));
+			boolean oneSpaceAfter = i + 2 < line.length() && line.charAt(i + 1) == ' ' && !Character.isWhitespace(line.charAt(i + 2));
+			if (spaceBefore || !oneSpaceAfter) return false;
+		}
+		return true;
+	}
 }
@@ -0,0 +1,158 @@
+package io;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * This class keeps a dictionary up to date with its file.
+ *
+ * The file is watched by a background thread and parsed again only when it really
+ * changed (Only its modified lines are parsed, see
+ * {@link Dictionary#Dictionary(String, Dictionary)}). The new dictionary replaces the
+ * previous one atomically : the readers never lock, and a reader that got a dictionary
+ * keeps using it even if the file is reloaded in the meantime.
+ * @author Erwin Redoté
+ */
+public class DictionaryWatcher implements AutoCloseable {
+
+	private static final long SETTLE_DELAY_MS = 200;
+
+	private final String filePath;
+	private final Path path;
+	private final AtomicReference<Dictionary> current;
+	private WatchService watchService;
+	private Object lastVersion;
+
+	/**
+	 * Load the dictionary from the specified file.
+	 * The file isn't watched until {@link #start()} is called.
+	 * @param filePath the path of the file (relative to the project, e.g : "data/vocabulary.txt")
+	 */
+	public DictionaryWatcher(String filePath) {
+		this(filePath, 0, 0);
+	}
+
+	/**
+	 * Open the dictionary of the specified file, sharded if {@code shardSize} is positive
+	 * (See {@link Dictionary#Dictionary(String, int, long)}).
+	 * The file isn't watched until {@link #start()} is called.
+	 * @param filePath the path of the file (relative to the project, e.g : "data/vocabulary.txt")
+	 * @param shardSize the number of lines of a shard, or 0 to load the whole file in memory
+	 * @param memoryCap the approximate memory the loaded shards may use, in bytes
+	 */
+	public DictionaryWatcher(String filePath, int shardSize, long memoryCap) {
+		this(filePath, () -> shardSize > 0 ? new Dictionary(filePath, shardSize, memoryCap) : new Dictionary(filePath));
+	}
+
+	/**
+	 * Watch the file of a dictionary loaded by the specified function. The new versions of the
+	 * dictionary are loaded the same way (sharded, compressed ...) as the first one.
+	 * The file isn't watched until {@link #start()} is called.
+	 * @param filePath the path of the file (relative to the project, e.g : "data/vocabulary.txt")
+	 * @param loader the function loading the first version of the dictionary
+	 */
+	public DictionaryWatcher(String filePath, Supplier<Dictionary> loader) {
+		this.filePath = filePath;
+		this.path = Dictionary.resolve(filePath);
+		this.lastVersion = version();
+		this.current = new AtomicReference<Dictionary>(loader.get());
+	}
+
+	/**
+	 * Return the current version of the dictionary.
+	 * @return the last loaded dictionary
+	 */
+	public Dictionary getDictionary() {
+		return current.get();
+	}
+
+	/**
+	 * Start watching the file in a background thread.
+	 */
+	public synchronized void start() {
+		if (watchService != null) return;
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException e) {
+			System.err.printf("Unable to watch the file (%s). The dictionary won't be reloaded.\n", filePath);
+			return;
+		}
+		Thread thread = new Thread(this::watch, "dictionary-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop watching the file.
+	 */
+	@Override
+	public synchronized void close() {
+		if (watchService == null) return;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Parse the file again if it changed since the last load.
+	 * @return true if a new dictionary has been published
+	 */
+	public synchronized boolean reload() {
+		Object version = version();
+		if (version == null || version.equals(lastVersion)) return false;
+		Dictionary dictionary = current.get().reload(filePath);
+		/* A file being written can be empty for a while, keep the previous words in that case */
+		if (dictionary.size() == 0) return false;
+		lastVersion = version;
+		current.set(dictionary);
+		return true;
+	}
+
+	private void watch() {
+		WatchService service = watchService;
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					changed |= path.getFileName().equals(event.context());
+				}
+				key.reset();
+				if (!changed) continue;
+
+				/* Editors often write a file in several steps, wait for the last one */
+				Thread.sleep(SETTLE_DELAY_MS);
+				WatchKey pending;
+				while ((pending = service.poll()) != null) {
+					pending.pollEvents();
+					pending.reset();
+				}
+				reload();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			/* The watcher has been closed */
+		}
+	}
+
+	private Object version() {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			return attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
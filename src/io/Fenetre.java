@@ -2,16 +2,28 @@ package io;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferStrategy;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -21,24 +33,43 @@ import javax.swing.*;
  * graphique et d'interagir avec cette dernière.
  *
  * @author Arnaud Comblin
- * @version 1.6
+ * @version 1.8
  */
 public class Fenetre implements ActionListener {
 
+	private static final Metrics.Timer DISTRIBUTION = Metrics.timer("fenetre.dispatch");
+	private static final Metrics.Timer DESSIN = Metrics.timer("fenetre.paint");
+	private static final Metrics.Timer DISPOSITION = Metrics.timer("fenetre.layout");
+	private static final int DELAI_REDIMENSIONNEMENT_MS = 100;
+	private static final int DELAI_FERMETURE_MS = 3000;
+	// Fermer une fenêtre arrête le programme, et donc toutes les fenêtres
+	private static final List<Fenetre> FENETRES = new CopyOnWriteArrayList<Fenetre>();
+	private static final AtomicBoolean ARRET = new AtomicBoolean();
+	private static final CacheTexte CACHE_TEXTE = new CacheTexte(256);
+
 	private JFrame cadre;
 	private Panneau panneau;
 	private final int NB_LIGNES;
 	private final int NB_COLONNES;
-	private Map<String, ElementFenetre> elementsParNom = new HashMap<String, ElementFenetre>();
-	private Map<Position, ElementFenetre> elementsParPosition = new HashMap<Position, ElementFenetre>();
-	private List<ElementFenetre> elements = new LinkedList<ElementFenetre>();
-	private Map<String, Image> cheminsEtImages = new HashMap<String, Image>();
+	// Lus par le thread de l'interface, celui du minuteur et celui de l'auditeur
+	private Map<String, ElementFenetre> elementsParNom = new ConcurrentHashMap<String, ElementFenetre>();
+	private Map<Position, ElementFenetre> elementsParPosition = new ConcurrentHashMap<Position, ElementFenetre>();
+	private List<ElementFenetre> elements = new CopyOnWriteArrayList<ElementFenetre>();
+	private Map<String, Image> cheminsEtImages = new ConcurrentHashMap<String, Image>();
 	private Auditeur auditeur;
 	private Font police = new Font(Theme.NOM_POLICE, Font.PLAIN, Theme.TAILLE_POLICE);
 	private Color couleurTexte = Theme.COULEUR_TEXTE;
 	private int margeVerticale = 0, margeHorizontale = 0;
 	private java.util.Timer timer = null;
+	private javax.swing.Timer redimensionnement;
+	private int largeurGrille = -1, hauteurGrille = -1;
+	private int largeurCellule, hauteurCellule;
+	// La taille du panneau lors du dernier replacement de tous les éléments
+	private int largeurDisposee = -1, hauteurDisposee = -1;
 	private long debut = System.nanoTime();
+	private final List<Map.Entry<String, AutoCloseable>> actionsFermeture = new CopyOnWriteArrayList<Map.Entry<String, AutoCloseable>>();
+	private final AtomicInteger evenementsEnCours = new AtomicInteger();
+	private final AtomicBoolean fermeture = new AtomicBoolean();
 
 	/**
 	 * Crée une fenêtre permettant d'organiser ses élements à l'aide d'une grille.
@@ -76,14 +107,12 @@ public class Fenetre implements ActionListener {
 	 */
 	public Fenetre(String titre, int largeur, int hauteur, int nbColonnes, int nbLignes) {
 		cadre = new JFrame(titre);
+		FENETRES.add(this);
 		cadre.setFocusable(true);
 		cadre.addWindowListener(new WindowAdapter() {
 			@Override
 			public void windowClosing(WindowEvent windowEvent) {
-				if (timer != null) {
-					timer.cancel();
-				}
-				System.exit(0);
+				terminer();
 			}
 		});
 		// cadre.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -106,6 +135,20 @@ public class Fenetre implements ActionListener {
 				signalerEvenement(cadre.getTitle(), action, evenement.getX() + "," + evenement.getY());
 			}
 		});
+		// Les redimensionnements rapprochés ne déplacent les éléments qu'une fois
+		redimensionnement = new javax.swing.Timer(DELAI_REDIMENSIONNEMENT_MS, evenement -> {
+			mettreAJourGrille();
+			if (largeurGrille != largeurDisposee || hauteurGrille != hauteurDisposee) {
+				repositionnerElements();
+			}
+		});
+		redimensionnement.setRepeats(false);
+		panneau.addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentResized(ComponentEvent evenement) {
+				redimensionnement.restart();
+			}
+		});
 		cadre.add(panneau);
 
 		setCouleurArrierePlan(Theme.COULEUR_ARRIERE_PLAN);
@@ -164,6 +207,18 @@ public class Fenetre implements ActionListener {
 		cadre.setVisible(true);
 	}
 
+	/**
+	 * Déplace la fenêtre sur l'écran (par exemple : pour placer deux fenêtres côte
+	 * à côte).
+	 * 
+	 * @param x l'abscisse du coin supérieur gauche de la fenêtre, en pixels
+	 * @param y l'ordonnée du coin supérieur gauche de la fenêtre, en pixels
+	 * @since 1.8
+	 */
+	public void setPosition(int x, int y) {
+		cadre.setLocation(x, y);
+	}
+
 	/**
 	 * Modifie le titre principal de la fenêtre.
 	 * 
@@ -174,6 +229,17 @@ public class Fenetre implements ActionListener {
 		cadre.setTitle(titre);
 	}
 
+	/**
+	 * Autorise ou non l'utilisateur à modifier la taille de la fenêtre. Les
+	 * éléments sont alors replacés dans la grille à chaque changement de taille.
+	 * 
+	 * @param redimensionnable vrai pour autoriser le changement de taille
+	 * @since 1.8
+	 */
+	public void setRedimensionnable(boolean redimensionnable) {
+		cadre.setResizable(redimensionnable);
+	}
+
 	private void setDimensions(int largeur, int hauteur) {
 		Dimension resolutionEcran = Toolkit.getDefaultToolkit().getScreenSize();
 		largeur = Math.min(Math.max(160, largeur), (int) resolutionEcran.getWidth());
@@ -243,10 +309,7 @@ public class Fenetre implements ActionListener {
 	public void setMargesElements(int margeVerticale, int margeHorizontale) {
 		this.margeVerticale = Math.min(Math.max(0, margeVerticale), getHauteurCellule() / 2);
 		this.margeHorizontale = Math.min(Math.max(0, margeHorizontale), getLargeurCellule() / 2);
-		for (Position position : elementsParPosition.keySet()) {
-			ElementFenetre element = elementsParPosition.get(position);
-			positionnerElement(element, position);
-		}
+		repositionnerElements();
 	}
 
 	/**
@@ -289,6 +352,86 @@ public class Fenetre implements ActionListener {
 		ajouterElement(new Etiquette(nomElement, new JLabel(texte, alignementSwing)), nomElement, ligne, colonne);
 	}
 
+	/**
+	 * Ajoute une étiquette dont le texte est dessiné directement, prévue pour les
+	 * textes modifiés très souvent (par exemple : un compte à rebours). La mise en
+	 * forme des derniers textes affichés est gardée en mémoire, et modifier le
+	 * texte ne recalcule pas la disposition de la fenêtre (voir aussi
+	 * {@link #setValeur(String, CharSequence)} et {@link Formateur}).
+	 * 
+	 * @param nomElement un nom unique permettant d'identifier l'étiquette
+	 * @param texte      le texte à afficher initialement dans l'étiquette
+	 * @param alignement l'alignement utilisé pour afficher le texte
+	 * @param ligne      l'indice de la ligne à laquelle doit être affichée
+	 *                   l'étiquette
+	 * @param colonne    l'indice de la colonne à laquelle doit être affichée
+	 *                   l'étiquette
+	 * @since 1.8
+	 */
+	public void ajouterEtiquetteDessinee(String nomElement, String texte, AlignementTexte alignement, int ligne,
+			int colonne) {
+		verifierArguments(nomElement, ligne, colonne);
+		ajouterElement(new EtiquetteDessinee(nomElement, texte, alignement, CACHE_TEXTE), nomElement, ligne, colonne);
+	}
+
+	/**
+	 * Ajoute une zone dans laquelle une scène animée est dessinée en continu, dans
+	 * une cellule de la grille de la fenêtre. Les autres éléments de la fenêtre
+	 * continuent à fonctionner normalement.
+	 * 
+	 * L'animation commence avec {@link #demarrerAnimation(String, int, int)}. La
+	 * valeur de la zone (voir {@link #getValeur(String)}) donne les statistiques
+	 * des images dessinées.
+	 * 
+	 * @param nomElement un nom unique permettant d'identifier la zone
+	 * @param animation  la scène à animer
+	 * @param ligne      l'indice de la ligne à laquelle doit être affichée la zone
+	 * @param colonne    l'indice de la colonne à laquelle doit être affichée la
+	 *                   zone
+	 * @since 1.8
+	 */
+	public void ajouterZoneAnimee(String nomElement, Animation animation, int ligne, int colonne) {
+		verifierArguments(nomElement, ligne, colonne);
+		if (animation == null) {
+			afficherStackTrace("L'animation n'est pas valide (reference null) !");
+		}
+		ZoneAnimee zone = new ZoneAnimee(nomElement, new Canvas(), animation);
+		ajouterElement(zone, nomElement, ligne, colonne);
+		((Canvas) zone.getComposant()).setBackground(panneau.getBackground());
+	}
+
+	/**
+	 * Démarre l'animation d'une zone animée. Un thread dédié fait avancer la scène
+	 * à intervalle fixe et dessine les images directement dans la zone (sans
+	 * passer par le dessin de Swing), en alternant deux tampons.
+	 * 
+	 * @param nomElement          le nom unique identifiant la zone animée
+	 * @param misesAJourParSeconde le nombre de pas de la scène par seconde
+	 * @param imagesParSeconde    le nombre maximum d'images dessinées par seconde
+	 * @since 1.8
+	 */
+	public void demarrerAnimation(String nomElement, int misesAJourParSeconde, int imagesParSeconde) {
+		getZoneAnimee(nomElement).demarrer(misesAJourParSeconde, imagesParSeconde);
+	}
+
+	/**
+	 * Arrête l'animation d'une zone animée. La dernière image reste affichée.
+	 * 
+	 * @param nomElement le nom unique identifiant la zone animée
+	 * @since 1.8
+	 */
+	public void arreterAnimation(String nomElement) {
+		getZoneAnimee(nomElement).arreter();
+	}
+
+	private ZoneAnimee getZoneAnimee(String nomElement) {
+		ElementFenetre element = verifierSiElementExiste(nomElement);
+		if (!(element instanceof ZoneAnimee)) {
+			afficherStackTrace("L'element \"" + nomElement + "\" n'est pas une zone animee !");
+		}
+		return (ZoneAnimee) element;
+	}
+
 	/**
 	 * Ajoute une zone de saisie permettant à l'utilisateur de saisir du texte dans
 	 * une cellule de la grille de la fenêtre.
@@ -329,6 +472,49 @@ public class Fenetre implements ActionListener {
 		ajouterElement(element, nomElement, ligne, colonne);
 	}
 
+	/**
+	 * Ajoute une liste (avec une barre de défilement) pouvant contenir un très
+	 * grand nombre d'options dans une cellule de la grille de la fenêtre.
+	 * 
+	 * Les options ne sont pas créées à l'avance : la fonction {@code contenu} est
+	 * appelée uniquement pour les options visibles, lorsqu'elles sont affichées.
+	 * Toutes les options ont la taille de l'option {@code prototype}, ce qui évite
+	 * de mesurer chacune d'elles.
+	 * 
+	 * @param nomElement un nom unique permettant d'identifier la liste
+	 * @param taille     le nombre d'options
+	 * @param contenu    la fonction donnant le texte de l'option à un indice donné
+	 * @param prototype  une option représentative de la taille des options
+	 * @param ligne      l'indice de la ligne à laquelle doit être affichée la liste
+	 * @param colonne    l'indice de la colonne à laquelle doit être affichée la
+	 *                   liste
+	 * @since 1.8
+	 */
+	public void ajouterListe(String nomElement, int taille, IntFunction<String> contenu, String prototype, int ligne,
+			int colonne) {
+		verifierArguments(nomElement, ligne, colonne);
+		ajouterElement(new ListeVirtuelle(nomElement, new JList<String>(), taille, contenu, prototype), nomElement, ligne,
+				colonne);
+	}
+
+	/**
+	 * Remplace les options d'une liste ajoutée avec
+	 * {@link #ajouterListe(String, int, IntFunction, String, int, int)}. Aucune
+	 * option n'est plus sélectionnée.
+	 * 
+	 * @param nomElement le nom unique identifiant la liste
+	 * @param taille     le nouveau nombre d'options
+	 * @param contenu    la fonction donnant le texte de l'option à un indice donné
+	 * @since 1.8
+	 */
+	public void setContenuListe(String nomElement, int taille, IntFunction<String> contenu) {
+		ElementFenetre element = verifierSiElementExiste(nomElement);
+		if (!(element instanceof ListeVirtuelle)) {
+			afficherStackTrace("L'element \"" + nomElement + "\" n'est pas une liste !");
+		}
+		((ListeVirtuelle) element).setContenu(taille, contenu);
+	}
+
 	/**
 	 * Ajoute un bouton permettant à l'utilisateur d'exécuter une action.
 	 * 
@@ -503,16 +689,51 @@ public class Fenetre implements ActionListener {
 	}
 
 	private int getHauteurCellule() {
-		return panneau.getHeight() / NB_LIGNES;
+		mettreAJourGrille();
+		return hauteurCellule;
 	}
 
 	private int getLargeurCellule() {
-		return panneau.getWidth() / NB_COLONNES;
+		mettreAJourGrille();
+		return largeurCellule;
+	}
+
+	/**
+	 * Recalcule la taille des cellules si la taille du panneau a changé.
+	 */
+	private void mettreAJourGrille() {
+		int largeur = panneau.getWidth(), hauteur = panneau.getHeight();
+		if (largeur == largeurGrille && hauteur == hauteurGrille) {
+			return;
+		}
+		largeurGrille = largeur;
+		hauteurGrille = hauteur;
+		largeurCellule = largeur / NB_COLONNES;
+		hauteurCellule = hauteur / NB_LIGNES;
+	}
+
+	/**
+	 * Replace tous les éléments dans leur cellule, puis redessine le panneau une
+	 * seule fois.
+	 */
+	private void repositionnerElements() {
+		long debutMesure = Metrics.start();
+		mettreAJourGrille();
+		largeurDisposee = largeurGrille;
+		hauteurDisposee = hauteurGrille;
+		for (Map.Entry<Position, ElementFenetre> entree : elementsParPosition.entrySet()) {
+			positionnerElement(entree.getValue(), entree.getKey());
+		}
+		panneau.repaint();
+		DISPOSITION.record(debutMesure);
 	}
 
 	private void positionnerElement(ElementFenetre element, Position position) {
 		int largeurCellule = getLargeurCellule();
 		int hauteurCellule = getHauteurCellule();
+		// Les marges ne peuvent pas dépasser la moitié d'une cellule devenue plus petite
+		int margeHorizontale = Math.min(this.margeHorizontale, largeurCellule / 2);
+		int margeVerticale = Math.min(this.margeVerticale, hauteurCellule / 2);
 		int x = position.j * largeurCellule + margeHorizontale;
 		int y = position.i * hauteurCellule + margeVerticale;
 		int largeur = largeurCellule - 2 * margeHorizontale;
@@ -542,6 +763,41 @@ public class Fenetre implements ActionListener {
 		verifierSiElementExiste(nomElement).setValeur(texte);
 	}
 
+	/**
+	 * Modifie la valeur de l'élément spécifié à partir d'un texte composé (par
+	 * exemple avec un {@link Formateur}). Si l'élément est une étiquette dessinée
+	 * qui affiche déjà ce texte, rien n'est fait (aucune chaîne n'est créée).
+	 * 
+	 * @param nomElement le nom unique identifiant l'élément
+	 * @param texte      la nouvelle valeur
+	 * @since 1.8
+	 */
+	public void setValeur(String nomElement, CharSequence texte) {
+		ElementFenetre element = verifierSiElementExiste(nomElement);
+		if (element instanceof EtiquetteDessinee) {
+			((EtiquetteDessinee) element).setValeur(texte);
+		} else {
+			element.setValeur(texte.toString());
+		}
+	}
+
+	/**
+	 * Remplace les options d'une liste déroulante. La première option est
+	 * sélectionnée.
+	 * 
+	 * @param nomElement le nom unique identifiant la liste déroulante
+	 * @param valeurs    les nouvelles options (celles-ci doivent être séparées par
+	 *                   un saut de ligne '\n')
+	 * @since 1.7
+	 */
+	public void setOptions(String nomElement, String valeurs) {
+		ElementFenetre element = verifierSiElementExiste(nomElement);
+		if (!(element instanceof ListeDeroulante)) {
+			afficherStackTrace("L'element \"" + nomElement + "\" n'est pas une liste deroulante !");
+		}
+		((ListeDeroulante) element).setOptions(valeurs);
+	}
+
 	private ElementFenetre verifierSiElementExiste(String nomElement) {
 		ElementFenetre element = elementsParNom.get(nomElement);
 		if (element == null) {
@@ -683,6 +939,54 @@ public class Fenetre implements ActionListener {
 		panneau.dessinerRectangle(couleur, new Position(y, x), largeur, hauteur);
 	}
 
+	/**
+	 * Dessine plusieurs rectangles de couleur en une seule fois : la fenêtre n'est
+	 * redessinée qu'une fois, et tous les rectangles d'une même couleur sont
+	 * remplis ensemble. Il est beaucoup plus rapide d'appeler cette fonction une
+	 * fois que {@link #dessinerRectangle(Color, int, int, int, int)} pour chaque
+	 * rectangle (par exemple : les barres d'un histogramme).
+	 * 
+	 * @param couleur  la couleur des rectangles
+	 * @param x        les abscisses des coins supérieurs gauches
+	 * @param y        les ordonnées des coins supérieurs gauches
+	 * @param largeurs les largeurs des rectangles
+	 * @param hauteurs les hauteurs des rectangles
+	 * @param nombre   le nombre de rectangles (les premières valeurs des tableaux
+	 *                 sont utilisées)
+	 * @since 1.8
+	 */
+	public void dessinerRectangles(Color couleur, int[] x, int[] y, int[] largeurs, int[] hauteurs, int nombre) {
+		verifierTableaux(nombre, x, y, largeurs, hauteurs);
+		panneau.dessinerFormes(couleur, x, y, largeurs, hauteurs, nombre, true);
+	}
+
+	/**
+	 * Dessine plusieurs lignes de couleur en une seule fois : la fenêtre n'est
+	 * redessinée qu'une fois, et toutes les lignes d'une même couleur sont tracées
+	 * ensemble.
+	 * 
+	 * @param couleur la couleur des lignes
+	 * @param x1      les abscisses des premiers points
+	 * @param y1      les ordonnées des premiers points
+	 * @param x2      les abscisses des seconds points
+	 * @param y2      les ordonnées des seconds points
+	 * @param nombre  le nombre de lignes (les premières valeurs des tableaux sont
+	 *                utilisées)
+	 * @since 1.8
+	 */
+	public void dessinerLignes(Color couleur, int[] x1, int[] y1, int[] x2, int[] y2, int nombre) {
+		verifierTableaux(nombre, x1, y1, x2, y2);
+		panneau.dessinerFormes(couleur, x1, y1, x2, y2, nombre, false);
+	}
+
+	private void verifierTableaux(int nombre, int[]... tableaux) {
+		for (int[] tableau : tableaux) {
+			if (nombre < 0 || tableau == null || tableau.length < nombre) {
+				afficherStackTrace("Les tableaux doivent contenir au moins " + nombre + " valeurs !");
+			}
+		}
+	}
+
 	@Override
 	public void actionPerformed(ActionEvent evenement) {
 		String nomElement = getElement((Component) evenement.getSource());
@@ -699,13 +1003,39 @@ public class Fenetre implements ActionListener {
 	}
 
 	private void signalerEvenement(String nomElement, ActionFenetre action, String valeur) {
-		if (auditeur != null) {
-			auditeur.executerAction(this, nomElement, action, valeur);
+		if (auditeur == null) {
+			return;
+		}
+		// Compté avant de vérifier la fermeture : le thread de fermeture attend donc
+		// tout évènement qui a vu la fenêtre encore ouverte
+		evenementsEnCours.incrementAndGet();
+		try {
+			if (!fermeture.get()) {
+				distribuerEvenement(nomElement, action, valeur);
+			}
+		} finally {
+			evenementsEnCours.decrementAndGet();
+		}
+	}
+
+	private void distribuerEvenement(String nomElement, ActionFenetre action, String valeur) {
+		FlightEvents.EventDispatched evenement = new FlightEvents.EventDispatched();
+		evenement.begin();
+		long debutMesure = Metrics.start();
+		auditeur.executerAction(this, nomElement, action, valeur);
+		DISTRIBUTION.record(debutMesure);
+		evenement.end();
+		if (evenement.shouldCommit()) {
+			evenement.element = nomElement;
+			evenement.action = action.name();
+			evenement.commit();
 		}
 	}
 
 	/**
-	 * Ferme la fenêtre.
+	 * Ferme la fenêtre. Le programme s'arrête ensuite, depuis un autre thread, une
+	 * fois les actions de fermeture exécutées (voir
+	 * {@link #ajouterActionFermeture(String, AutoCloseable)}).
 	 * 
 	 * @since 1.5
 	 */
@@ -713,6 +1043,96 @@ public class Fenetre implements ActionListener {
 		cadre.dispatchEvent(new WindowEvent(cadre, WindowEvent.WINDOW_CLOSING));
 	}
 
+	/**
+	 * Ajoute une action à exécuter à la fermeture de la fenêtre, avant l'arrêt du
+	 * programme (par exemple : fermer un fichier dont une partie est encore en
+	 * mémoire). Fermer une fenêtre arrête le programme : les actions de toutes les
+	 * fenêtres sont alors exécutées, dans l'ordre inverse de leur ajout, une fois
+	 * les évènements en cours de toutes les fenêtres terminés. Le programme
+	 * s'arrête au plus tard 3 secondes après la fermeture, même si une action n'est
+	 * pas terminée.
+	 * 
+	 * @param nom    le nom de l'action (affiché si elle échoue ou ne se termine pas
+	 *               à temps)
+	 * @param action l'action à exécuter
+	 * @since 1.8
+	 */
+	public void ajouterActionFermeture(String nom, AutoCloseable action) {
+		actionsFermeture.add(Map.entry(nom, action));
+	}
+
+	/**
+	 * Arrête le programme : toutes les fenêtres cessent de recevoir des évènements
+	 * et sont cachées, puis les actions de fermeture de toutes les fenêtres sont
+	 * exécutées depuis un autre thread, pour ne pas bloquer l'interface pendant
+	 * l'attente.
+	 */
+	private void terminer() {
+		if (!ARRET.compareAndSet(false, true)) {
+			return;
+		}
+		// Les fenêtres fermées ne sont plus retenues
+		List<Fenetre> fenetres = new ArrayList<Fenetre>(FENETRES);
+		FENETRES.removeAll(fenetres);
+		for (Fenetre fenetre : fenetres) {
+			fenetre.arreterEvenements();
+		}
+		Thread arret = new Thread(() -> {
+			executerActionsFermeture(fenetres, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DELAI_FERMETURE_MS));
+			System.exit(0);
+		}, "fenetre-fermeture");
+		arret.start();
+	}
+
+	private void arreterEvenements() {
+		fermeture.set(true);
+		if (timer != null) {
+			timer.cancel();
+		}
+		redimensionnement.stop();
+		for (ElementFenetre element : elements) {
+			if (element instanceof ZoneAnimee) {
+				((ZoneAnimee) element).arreter();
+			}
+		}
+		cadre.setVisible(false);
+	}
+
+	private static void executerActionsFermeture(List<Fenetre> fenetres, long limite) {
+		// Les évènements déjà commencés (minuteur, auditeur) se terminent d'abord
+		while (System.nanoTime() < limite && fenetres.stream().anyMatch(fenetre -> fenetre.evenementsEnCours.get() > 0)) {
+			LockSupport.parkNanos(1_000_000L);
+		}
+		// Les dernières fenêtres créées sont fermées en premier
+		List<Map.Entry<String, AutoCloseable>> toutesLesActions = new ArrayList<Map.Entry<String, AutoCloseable>>();
+		for (Fenetre fenetre : fenetres) {
+			toutesLesActions.addAll(fenetre.actionsFermeture);
+		}
+		AtomicReference<String> actionEnCours = new AtomicReference<String>();
+		Thread actions = new Thread(() -> {
+			for (int i = toutesLesActions.size() - 1; i >= 0; i--) {
+				Map.Entry<String, AutoCloseable> action = toutesLesActions.get(i);
+				actionEnCours.set(action.getKey());
+				try {
+					action.getValue().close();
+				} catch (Exception e) {
+					System.err.println("L'action de fermeture \"" + action.getKey() + "\" a echoue :");
+					e.printStackTrace();
+				}
+			}
+		}, "fenetre-actions-fermeture");
+		actions.setDaemon(true);
+		actions.start();
+		try {
+			actions.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(limite - System.nanoTime())));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (actions.isAlive()) {
+			System.err.println("L'action de fermeture \"" + actionEnCours.get() + "\" ne s'est pas terminee a temps.");
+		}
+	}
+
 	private void afficherStackTrace(String message) {
 		System.err.println(message);
 		StackTraceElement[] elements = Thread.currentThread().getStackTrace();
@@ -720,7 +1140,9 @@ public class Fenetre implements ActionListener {
 		for (int i = 0; i < nbLignes; i++) {
 			System.err.println("\t" + elements[2 + i]);
 		}
+		// L'arrêt se poursuit dans un autre thread : l'appelant ne doit pas continuer
 		fermer();
+		throw new IllegalStateException(message);
 	}
 
 	private class Position {
@@ -761,43 +1183,61 @@ public class Fenetre implements ActionListener {
 		private static final long serialVersionUID = -2259378431692527399L;
 
 		private List<ImageAffichage> imagesEtPositions = new LinkedList<ImageAffichage>();
-		private CopyOnWriteArrayList<ImageAffichage> copieImagesEtPositions = new CopyOnWriteArrayList<ImageAffichage>();
+		private volatile CopyOnWriteArrayList<ImageAffichage> copieImagesEtPositions = new CopyOnWriteArrayList<ImageAffichage>();
 
 		private List<Ligne> lignes = new LinkedList<Ligne>();
-		private CopyOnWriteArrayList<Ligne> copieLignes = new CopyOnWriteArrayList<Ligne>();
+		private volatile CopyOnWriteArrayList<Ligne> copieLignes = new CopyOnWriteArrayList<Ligne>();
 
 		private List<Rectangle> rectangles = new LinkedList<Rectangle>();
-		private CopyOnWriteArrayList<Rectangle> copieRectangles = new CopyOnWriteArrayList<Rectangle>();
+		private volatile CopyOnWriteArrayList<Rectangle> copieRectangles = new CopyOnWriteArrayList<Rectangle>();
+
+		private final FormesParLots lots = new FormesParLots();
 
-		public void effacerImages() {
+		// Les listes en préparation sont protégées par le verrou du panneau
+		public synchronized void effacerImages() {
 			imagesEtPositions.clear();
 			lignes.clear();
 			rectangles.clear();
+			lots.effacer();
 		}
 
-		public void preparerImage(Image image, Position position, Dimension dimensions) {
+		public synchronized void preparerImage(Image image, Position position, Dimension dimensions) {
 			imagesEtPositions.add(new ImageAffichage(image, position, dimensions));
 		}
 
 		public void dessinerLigne(Color couleur, Position p1, Position p2) {
-			lignes.add(new Ligne(couleur, p1, p2));
-			copieLignes = new CopyOnWriteArrayList<>(lignes);
+			synchronized (this) {
+				lignes.add(new Ligne(couleur, p1, p2));
+				copieLignes = new CopyOnWriteArrayList<>(lignes);
+			}
 			repaint();
 		}
 
 		public void dessinerRectangle(Color couleur, Position p, int largeur, int hauteur) {
-			rectangles.add(new Rectangle(couleur, p, largeur, hauteur));
-			copieRectangles = new CopyOnWriteArrayList<>(rectangles);
+			synchronized (this) {
+				rectangles.add(new Rectangle(couleur, p, largeur, hauteur));
+				copieRectangles = new CopyOnWriteArrayList<>(rectangles);
+			}
 			repaint();
 		}
 
 		public void dessinerImages() {
-			copieImagesEtPositions = new CopyOnWriteArrayList<>(imagesEtPositions);
+			synchronized (this) {
+				copieImagesEtPositions = new CopyOnWriteArrayList<>(imagesEtPositions);
+			}
+			repaint();
+		}
+
+		public void dessinerFormes(Color couleur, int[] a, int[] b, int[] c, int[] d, int nombre, boolean remplir) {
+			lots.ajouter(couleur, a, b, c, d, nombre, remplir);
 			repaint();
 		}
 
 		@Override
 		public void paintComponent(Graphics g) {
+			FlightEvents.Paint evenement = new FlightEvents.Paint();
+			evenement.begin();
+			long debutMesure = Metrics.start();
 			super.paintComponent(g);
 
 			for (ImageAffichage imageAffichage : copieImagesEtPositions) {
@@ -822,6 +1262,23 @@ public class Fenetre implements ActionListener {
 				g2d.setColor(rectangle.couleur);
 				g2d.fillRect(rectangle.p.j, rectangle.p.i, rectangle.largeur, rectangle.hauteur);
 			}
+
+			int nbLignesLots = 0, nbRectanglesLots = 0;
+			for (FormesParLots.LotDessine lot : lots.getLots()) {
+				g2d.setColor(lot.couleur);
+				g2d.fill(lot.rectangles);
+				g2d.draw(lot.lignes);
+				nbRectanglesLots += lot.nbRectangles;
+				nbLignesLots += lot.nbLignes;
+			}
+			DESSIN.record(debutMesure);
+			evenement.end();
+			if (evenement.shouldCommit()) {
+				evenement.images = copieImagesEtPositions.size();
+				evenement.lines = copieLignes.size() + nbLignesLots;
+				evenement.rectangles = copieRectangles.size() + nbRectanglesLots;
+				evenement.commit();
+			}
 		}
 
 		private class ImageAffichage {
@@ -870,6 +1327,110 @@ public class Fenetre implements ActionListener {
 
 }
 
+/**
+ * Les formes dessinées par lots (voir {@link Fenetre#dessinerRectangles}), rangées
+ * par couleur. Les lots sont modifiés sous le verrou de l'objet depuis n'importe
+ * quel thread, et dessinés sans verrou à partir de leur dernière copie.
+ */
+class FormesParLots {
+
+	private final Map<Color, LotFormes> lots = new LinkedHashMap<Color, LotFormes>();
+	private volatile List<LotDessine> copie = Collections.emptyList();
+
+	public synchronized void ajouter(Color couleur, int[] a, int[] b, int[] c, int[] d, int nombre, boolean remplir) {
+		lots.computeIfAbsent(couleur, cle -> new LotFormes()).ajouter(a, b, c, d, nombre, remplir);
+		// Une seule copie pour tout le lot
+		List<LotDessine> nouvelleCopie = new ArrayList<LotDessine>(lots.size());
+		for (Map.Entry<Color, LotFormes> lot : lots.entrySet()) {
+			nouvelleCopie.add(lot.getValue().copier(lot.getKey()));
+		}
+		copie = nouvelleCopie;
+	}
+
+	/**
+	 * Vide les lots en préparation (la copie reste dessinée jusqu'au prochain ajout).
+	 */
+	public synchronized void effacer() {
+		lots.clear();
+	}
+
+	/**
+	 * Renvoie la dernière copie des lots, qui n'est plus modifiée.
+	 */
+	public List<LotDessine> getLots() {
+		return copie;
+	}
+
+	/**
+	 * Les formes d'une couleur, stockées dans des tableaux d'entiers qui
+	 * s'agrandissent (4 entiers par forme).
+	 */
+	static final class LotFormes {
+
+		private int[] rectangles = new int[64], lignes = new int[64];
+		private int nbRectangles = 0, nbLignes = 0;
+
+		public void ajouter(int[] a, int[] b, int[] c, int[] d, int nombre, boolean remplir) {
+			int[] valeurs = remplir ? rectangles : lignes;
+			int debut = 4 * (remplir ? nbRectangles : nbLignes);
+			if (debut + 4 * nombre > valeurs.length) {
+				valeurs = Arrays.copyOf(valeurs, Math.max(valeurs.length * 2, debut + 4 * nombre));
+			}
+			for (int k = 0; k < nombre; k++) {
+				valeurs[debut + 4 * k] = a[k];
+				valeurs[debut + 4 * k + 1] = b[k];
+				valeurs[debut + 4 * k + 2] = c[k];
+				valeurs[debut + 4 * k + 3] = d[k];
+			}
+			if (remplir) {
+				rectangles = valeurs;
+				nbRectangles += nombre;
+			} else {
+				lignes = valeurs;
+				nbLignes += nombre;
+			}
+		}
+
+		public LotDessine copier(Color couleur) {
+			Path2D.Float cheminRectangles = new Path2D.Float(Path2D.WIND_NON_ZERO, 5 * nbRectangles);
+			for (int k = 0; k < 4 * nbRectangles; k += 4) {
+				float x = rectangles[k], y = rectangles[k + 1], l = rectangles[k + 2], h = rectangles[k + 3];
+				cheminRectangles.moveTo(x, y);
+				cheminRectangles.lineTo(x + l, y);
+				cheminRectangles.lineTo(x + l, y + h);
+				cheminRectangles.lineTo(x, y + h);
+				cheminRectangles.closePath();
+			}
+			Path2D.Float cheminLignes = new Path2D.Float(Path2D.WIND_NON_ZERO, 2 * nbLignes);
+			for (int k = 0; k < 4 * nbLignes; k += 4) {
+				cheminLignes.moveTo(lignes[k], lignes[k + 1]);
+				cheminLignes.lineTo(lignes[k + 2], lignes[k + 3]);
+			}
+			return new LotDessine(couleur, cheminRectangles, cheminLignes, nbRectangles, nbLignes);
+		}
+	}
+
+	/**
+	 * Une copie d'un lot prête à être dessinée (elle n'est plus modifiée).
+	 */
+	static final class LotDessine {
+
+		public final Color couleur;
+		public final Path2D.Float rectangles, lignes;
+		public final int nbRectangles, nbLignes;
+
+		public LotDessine(Color couleur, Path2D.Float rectangles, Path2D.Float lignes, int nbRectangles,
+				int nbLignes) {
+			this.couleur = couleur;
+			this.rectangles = rectangles;
+			this.lignes = lignes;
+			this.nbRectangles = nbRectangles;
+			this.nbLignes = nbLignes;
+		}
+
+	}
+}
+
 abstract class ElementFenetre {
 
 	private String nom;
@@ -962,6 +1523,218 @@ class Etiquette extends ElementVisible {
 
 }
 
+class EtiquetteDessinee extends ElementVisible {
+
+	private String texte;
+
+	public EtiquetteDessinee(String nom, String texte, AlignementTexte alignement, CacheTexte cache) {
+		super(nom, new Zone(alignement, cache));
+		setValeur(texte);
+	}
+
+	@Override
+	public String getValeur() {
+		return texte;
+	}
+
+	@Override
+	public void setValeur(String valeur) {
+		setValeur((CharSequence) valeur);
+	}
+
+	public void setValeur(CharSequence valeur) {
+		if (valeur == null) {
+			valeur = "";
+		}
+		if (texte != null && texte.contentEquals(valeur)) {
+			return;
+		}
+		texte = valeur.toString();
+		// Seule la zone de l'étiquette est redessinée, sa taille ne change pas
+		((Zone) getComposant()).setTexte(texte);
+	}
+
+	private static class Zone extends JComponent {
+
+		private static final long serialVersionUID = 1L;
+		private final AlignementTexte alignement;
+		private final CacheTexte cache;
+		private volatile String texte = "";
+
+		public Zone(AlignementTexte alignement, CacheTexte cache) {
+			this.alignement = alignement;
+			this.cache = cache;
+		}
+
+		public void setTexte(String texte) {
+			this.texte = texte;
+			repaint();
+		}
+
+		@Override
+		protected void paintComponent(Graphics graphique) {
+			String texte = this.texte;
+			if (texte.isEmpty()) {
+				return;
+			}
+			Graphics2D graphique2D = (Graphics2D) graphique;
+			graphique2D.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			graphique2D.setColor(getForeground());
+			java.awt.font.TextLayout miseEnForme = cache.get(texte, getFont(), graphique2D.getFontRenderContext());
+			float largeur = miseEnForme.getAdvance();
+			float x = 0;
+			if (alignement == AlignementTexte.CENTRE) {
+				x = (getWidth() - largeur) / 2;
+			} else if (alignement == AlignementTexte.DROITE) {
+				x = getWidth() - largeur;
+			}
+			float y = (getHeight() - miseEnForme.getAscent() - miseEnForme.getDescent()) / 2 + miseEnForme.getAscent();
+			miseEnForme.draw(graphique2D, x, y);
+		}
+	}
+
+}
+
+class ZoneAnimee extends ElementVisible {
+
+	private static final Metrics.Timer IMAGE = Metrics.timer("fenetre.frame");
+	private static final long PAS_MAX_NS = 250_000_000L;
+
+	private final Canvas canvas;
+	private final Animation animation;
+	private Thread thread;
+	private volatile boolean enCours;
+	// Écrits uniquement par le thread d'animation
+	private volatile long images, misesAJour, retards, dureeDessinNs, intervalleMaxNs;
+
+	public ZoneAnimee(String nom, Canvas canvas, Animation animation) {
+		super(nom, canvas);
+		this.canvas = canvas;
+		this.animation = animation;
+		canvas.setIgnoreRepaint(true);
+	}
+
+	public synchronized void demarrer(int misesAJourParSeconde, int imagesParSeconde) {
+		arreter();
+		long pas = 1_000_000_000L / Math.max(1, misesAJourParSeconde);
+		long intervalleImage = 1_000_000_000L / Math.max(1, imagesParSeconde);
+		enCours = true;
+		thread = new Thread(() -> boucle(pas, intervalleImage), "fenetre-animation-" + getNom());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public synchronized void arreter() {
+		enCours = false;
+		if (thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		thread = null;
+	}
+
+	/**
+	 * Retourne les statistiques des images dessinées depuis le démarrage.
+	 */
+	@Override
+	public String getValeur() {
+		long nbImages = images;
+		return String.format("images=%d misesAJour=%d dessinMoyen=%.2fms intervalleMax=%.2fms retards=%d", nbImages,
+				misesAJour, nbImages == 0 ? 0 : dureeDessinNs / 1e6 / nbImages, intervalleMaxNs / 1e6, retards);
+	}
+
+	@Override
+	public void setValeur(String valeur) {
+		// Les statistiques ne peuvent pas être modifiées
+	}
+
+	/**
+	 * Fait avancer la scène par pas fixes selon le temps écoulé, puis dessine une
+	 * image en interpolant entre le dernier pas et le suivant.
+	 */
+	private void boucle(long pas, long intervalleImage) {
+		BufferStrategy strategie = null;
+		int largeur = 0, hauteur = 0;
+		long precedent = System.nanoTime(), accumulateur = 0, prochaineImage = precedent, derniereImage = 0;
+		while (enCours) {
+			if (!canvas.isDisplayable() || canvas.getWidth() <= 0 || canvas.getHeight() <= 0) {
+				// La fenêtre n'est pas encore affichée
+				LockSupport.parkNanos(10_000_000L);
+				precedent = prochaineImage = System.nanoTime();
+				continue;
+			}
+			if (strategie == null || largeur != canvas.getWidth() || hauteur != canvas.getHeight()) {
+				largeur = canvas.getWidth();
+				hauteur = canvas.getHeight();
+				canvas.createBufferStrategy(2);
+				strategie = canvas.getBufferStrategy();
+			}
+
+			long maintenant = System.nanoTime();
+			accumulateur += Math.min(maintenant - precedent, PAS_MAX_NS);
+			precedent = maintenant;
+			try {
+				while (accumulateur >= pas) {
+					animation.mettreAJour(pas / 1e9);
+					accumulateur -= pas;
+					misesAJour++;
+				}
+				dessiner(strategie, (double) accumulateur / pas, largeur, hauteur);
+			} catch (RuntimeException e) {
+				System.err.println("L'animation \"" + getNom() + "\" est arretee a cause d'une erreur :");
+				e.printStackTrace();
+				enCours = false;
+				break;
+			}
+
+			long finImage = System.nanoTime();
+			IMAGE.recordNanos(finImage - maintenant);
+			dureeDessinNs += finImage - maintenant;
+			if (derniereImage != 0) {
+				long intervalle = finImage - derniereImage;
+				intervalleMaxNs = Math.max(intervalleMaxNs, intervalle);
+				if (intervalle > intervalleImage + intervalleImage / 2) {
+					retards++;
+				}
+			}
+			derniereImage = finImage;
+			images++;
+
+			prochaineImage += intervalleImage;
+			long attente = prochaineImage - System.nanoTime();
+			if (attente > 0) {
+				LockSupport.parkNanos(attente);
+			} else {
+				// En retard : on ne dessine pas plusieurs images d'affilée pour rattraper
+				prochaineImage = System.nanoTime();
+			}
+		}
+	}
+
+	private void dessiner(BufferStrategy strategie, double interpolation, int largeur, int hauteur) {
+		do {
+			do {
+				Graphics2D graphique = (Graphics2D) strategie.getDrawGraphics();
+				try {
+					graphique.setColor(canvas.getBackground());
+					graphique.fillRect(0, 0, largeur, hauteur);
+					graphique.setFont(canvas.getFont());
+					graphique.setColor(canvas.getForeground());
+					animation.dessiner(graphique, interpolation, largeur, hauteur);
+				} finally {
+					graphique.dispose();
+				}
+			} while (strategie.contentsRestored());
+			strategie.show();
+		} while (strategie.contentsLost());
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+}
+
 class ZoneSaisie extends ElementVisible {
 
 	public ZoneSaisie(String nom, JTextField zoneSaisie) {
@@ -984,9 +1757,13 @@ class ListeDeroulante extends ElementVisible {
 
 	public ListeDeroulante(String nom, JComboBox<String> listeDeroulante, String valeurs) {
 		super(nom, listeDeroulante);
-		for (String option : valeurs.split("\n")) {
-			listeDeroulante.addItem(option);
-		}
+		setOptions(valeurs);
+	}
+
+	public void setOptions(String valeurs) {
+		@SuppressWarnings("unchecked")
+		JComboBox<String> listeDeroulante = (JComboBox<String>) getComposant();
+		listeDeroulante.setModel(new DefaultComboBoxModel<String>(valeurs.split("\n")));
 	}
 
 	@Override
@@ -1005,6 +1782,113 @@ class ListeDeroulante extends ElementVisible {
 
 }
 
+class ListeVirtuelle extends ElementVisible {
+
+	private final JList<String> liste;
+	private final Modele modele = new Modele();
+	private final String prototype;
+
+	public ListeVirtuelle(String nom, JList<String> liste, int taille, IntFunction<String> contenu, String prototype) {
+		super(nom, new JScrollPane(liste));
+		this.liste = liste;
+		this.prototype = prototype;
+		liste.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		liste.setModel(modele);
+		liste.setPrototypeCellValue(prototype);
+		setContenu(taille, contenu);
+	}
+
+	public void setContenu(int taille, IntFunction<String> contenu) {
+		liste.clearSelection();
+		modele.setContenu(taille, contenu);
+		liste.ensureIndexIsVisible(0);
+	}
+
+	@Override
+	public String getValeur() {
+		String valeur = liste.getSelectedValue();
+		return valeur != null ? valeur : "";
+	}
+
+	/**
+	 * Sélectionne la première option égale à la valeur (les options sont parcourues
+	 * une à une).
+	 */
+	@Override
+	public void setValeur(String valeur) {
+		for (int i = 0; i < modele.getSize(); i++) {
+			if (modele.getElementAt(i).equals(valeur)) {
+				liste.setSelectedIndex(i);
+				liste.ensureIndexIsVisible(i);
+				return;
+			}
+		}
+		liste.clearSelection();
+	}
+
+	@Override
+	public void setPolice(Font police) {
+		liste.setFont(police);
+		// La taille des options dépend de la police
+		liste.setPrototypeCellValue(prototype);
+	}
+
+	@Override
+	public void setCouleurTexte(Color couleur) {
+		liste.setForeground(couleur);
+	}
+
+	@Override
+	public boolean possedeComposant(Object composant) {
+		return super.possedeComposant(composant) || liste.equals(composant);
+	}
+
+	private static class Modele extends AbstractListModel<String> {
+
+		private static final long serialVersionUID = 1L;
+		// La taille et la fonction sont remplacées ensemble : un thread qui lit la
+		// liste ne voit jamais la taille d'un contenu avec la fonction d'un autre
+		private volatile Contenu contenu = new Contenu(0, indice -> "");
+
+		public void setContenu(int taille, IntFunction<String> contenu) {
+			int ancienneTaille = this.contenu.taille;
+			this.contenu = new Contenu(Math.max(0, taille), contenu);
+			// Un seul événement, quelle que soit la taille de la liste
+			fireContentsChanged(this, 0, Math.max(ancienneTaille, taille) - 1);
+		}
+
+		@Override
+		public int getSize() {
+			return contenu.taille;
+		}
+
+		/**
+		 * Renvoie l'option demandée, ou une chaîne vide si l'indice dépasse le contenu
+		 * actuel (la taille lue juste avant peut être celle d'un contenu remplacé depuis).
+		 */
+		@Override
+		public String getElementAt(int indice) {
+			Contenu actuel = contenu;
+			String valeur = indice >= 0 && indice < actuel.taille ? actuel.fonction.apply(indice) : null;
+			return valeur != null ? valeur : "";
+		}
+
+	}
+
+	private static final class Contenu {
+
+		private final int taille;
+		private final IntFunction<String> fonction;
+
+		private Contenu(int taille, IntFunction<String> fonction) {
+			this.taille = taille;
+			this.fonction = fonction;
+		}
+
+	}
+
+}
+
 class Bouton extends ElementVisible {
 
 	public Bouton(String nom, JButton bouton) {
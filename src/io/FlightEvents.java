@@ -0,0 +1,113 @@
+package io;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * This class groups the Java Flight Recorder events of the application.
+ *
+ * They are recorded only when a recording is running, for example with
+ * {@code java -XX:StartFlightRecording=filename=session.jfr -jar ...}, and can be read
+ * with {@code jfr print --categories Vocabulary session.jfr}.
+ * @author Erwin Redoté
+ */
+public final class FlightEvents {
+
+	private FlightEvents() {}
+
+	@Name("vocabulary.DictionaryLoad")
+	@Label("Dictionary Load")
+	@Category("Vocabulary")
+	@Description("Reading and parsing of a vocabulary file")
+	public static final class DictionaryLoad extends Event {
+
+		@Label("File")
+		public String file;
+
+		@Label("Entries")
+		public int entries;
+
+		@Label("Reused Entries")
+		@Description("Entries taken from the previous version of the dictionary instead of being parsed again")
+		public int reused;
+	}
+
+	@Name("vocabulary.QuestionDrawn")
+	@Label("Question Drawn")
+	@Category("Vocabulary")
+	@Description("A word has been drawn from the dictionary")
+	@StackTrace(false)
+	public static final class QuestionDrawn extends Event {
+
+		@Label("Entry")
+		public int entry;
+
+		@Label("Direction")
+		@Description("The language the user has to translate to (e.g : \"ANGLAIS\" or \"FRANCAIS\")")
+		public String direction;
+
+		@Label("Word")
+		public String word;
+	}
+
+	@Name("vocabulary.AnswerChecked")
+	@Label("Answer Checked")
+	@Category("Vocabulary")
+	@Description("An answer of the user has been checked")
+	@StackTrace(false)
+	public static final class AnswerChecked extends Event {
+
+		@Label("Entry")
+		public int entry;
+
+		@Label("Direction")
+		public String direction;
+
+		@Label("Correct")
+		public boolean correct;
+
+		@Label("Timed Out")
+		public boolean timedOut;
+
+		@Label("Response Time")
+		@Description("Time between the display of the question and the check of the answer")
+		@Timespan
+		public long latency;
+	}
+
+	@Name("vocabulary.EventDispatched")
+	@Label("UI Event Dispatched")
+	@Category({ "Vocabulary", "Fenetre" })
+	@Description("An event of the window has been given to its listener")
+	@StackTrace(false)
+	public static final class EventDispatched extends Event {
+
+		@Label("Element")
+		public String element;
+
+		@Label("Action")
+		public String action;
+	}
+
+	@Name("vocabulary.Paint")
+	@Label("Paint Pass")
+	@Category({ "Vocabulary", "Fenetre" })
+	@Description("The drawing panel of the window has been painted")
+	@StackTrace(false)
+	public static final class Paint extends Event {
+
+		@Label("Images")
+		public int images;
+
+		@Label("Lines")
+		public int lines;
+
+		@Label("Rectangles")
+		public int rectangles;
+	}
+}
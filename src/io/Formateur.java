@@ -0,0 +1,96 @@
+package io;
+
+/**
+ * Cette classe permet de composer un texte morceau par morceau en réutilisant
+ * toujours le même tampon, sans créer de chaîne intermédiaire (par exemple :
+ * un compte à rebours mis à jour plusieurs fois par seconde).
+ *
+ * <pre>
+ * formateur.effacer().ajouter("Temps restant : ").ajouter(secondes).ajouter(" s");
+ * fenetre.setValeur("temps", formateur);
+ * </pre>
+ *
+ * Un formateur n'est pas prévu pour être utilisé par plusieurs threads à la
+ * fois.
+ *
+ * @author Erwin Redoté
+ * @version 1.0
+ */
+public final class Formateur implements CharSequence {
+
+	private final StringBuilder tampon = new StringBuilder(64);
+
+	/**
+	 * Efface le texte pour en composer un nouveau.
+	 *
+	 * @return ce formateur
+	 */
+	public Formateur effacer() {
+		tampon.setLength(0);
+		return this;
+	}
+
+	public Formateur ajouter(CharSequence texte) {
+		tampon.append(texte);
+		return this;
+	}
+
+	public Formateur ajouter(char caractere) {
+		tampon.append(caractere);
+		return this;
+	}
+
+	public Formateur ajouter(long nombre) {
+		tampon.append(nombre);
+		return this;
+	}
+
+	/**
+	 * Ajoute un nombre arrondi au nombre de décimales spécifié (par exemple :
+	 * 2.75 avec 1 décimale donne "2.8").
+	 *
+	 * @param nombre    le nombre à ajouter
+	 * @param decimales le nombre de décimales (entre 0 et 9)
+	 * @return ce formateur
+	 */
+	public Formateur ajouter(double nombre, int decimales) {
+		decimales = Math.min(Math.max(decimales, 0), 9);
+		long facteur = 1;
+		for (int i = 0; i < decimales; i++) {
+			facteur *= 10;
+		}
+		long arrondi = Math.round(Math.abs(nombre) * facteur);
+		if (nombre < 0 && arrondi != 0) {
+			tampon.append('-');
+		}
+		tampon.append(arrondi / facteur);
+		if (decimales > 0) {
+			tampon.append('.');
+			long reste = arrondi % facteur;
+			for (long puissance = facteur / 10; puissance > 0; puissance /= 10) {
+				tampon.append((char) ('0' + reste / puissance % 10));
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return tampon.length();
+	}
+
+	@Override
+	public char charAt(int indice) {
+		return tampon.charAt(indice);
+	}
+
+	@Override
+	public CharSequence subSequence(int debut, int fin) {
+		return tampon.subSequence(debut, fin);
+	}
+
+	@Override
+	public String toString() {
+		return tampon.toString();
+	}
+}
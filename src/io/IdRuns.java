@@ -0,0 +1,77 @@
+package io;
+
+import java.util.Arrays;
+
+/**
+ * This class stores the identifiers of the lines of a sharded dictionary (See {@link Dictionary#getId(int)})
+ * as runs of consecutive lines having consecutive identifiers.
+ *
+ * A first version needs one run, and a new version needs a few runs more per modified place of the
+ * file : the memory doesn't grow with the number of lines, unlike an identifier per line.
+ * @author Erwin Redoté
+ */
+final class IdRuns {
+
+	/* The runs, in the order of their lines */
+	private int[] lines = new int[4];
+	private int[] ids = new int[4];
+	private int[] lengths = new int[4];
+	private int count = 0;
+	/* The runs, in the order of their identifiers (See freeze()) */
+	private int[] byId;
+
+	/**
+	 * Give an identifier to the next line (The lines must be added in order, without gap).
+	 */
+	void add(int line, int id) {
+		int last = count - 1;
+		if (last >= 0 && lines[last] + lengths[last] == line && ids[last] + lengths[last] == id) {
+			lengths[last]++;
+			return;
+		}
+		if (count == lines.length) {
+			lines = Arrays.copyOf(lines, count * 2);
+			ids = Arrays.copyOf(ids, count * 2);
+			lengths = Arrays.copyOf(lengths, count * 2);
+		}
+		lines[count] = line;
+		ids[count] = id;
+		lengths[count] = 1;
+		count++;
+	}
+
+	/**
+	 * End the additions : the runs are sorted by identifier to find the lines.
+	 */
+	IdRuns freeze() {
+		lines = Arrays.copyOf(lines, count);
+		ids = Arrays.copyOf(ids, count);
+		lengths = Arrays.copyOf(lengths, count);
+		long[] sorted = new long[count];
+		for (int run = 0; run < count; run++) sorted[run] = (long) ids[run] << 32 | run;
+		Arrays.sort(sorted);
+		byId = new int[count];
+		for (int i = 0; i < count; i++) byId[i] = (int) sorted[i];
+		return this;
+	}
+
+	int getId(int line) {
+		int run = Arrays.binarySearch(lines, line);
+		if (run < 0) run = -run - 2;
+		return run < 0 ? -1 : ids[run] + line - lines[run];
+	}
+
+	int getLine(int id) {
+		int low = 0, high = count - 1, found = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (ids[byId[middle]] <= id) {
+				found = byId[middle];
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return found >= 0 && id < ids[found] + lengths[found] ? lines[found] + id - ids[found] : -1;
+	}
+}
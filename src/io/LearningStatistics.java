@@ -0,0 +1,346 @@
+package io;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * This class stores the learning statistics of every entry of a dictionary in a file
+ * mapped in memory.
+ *
+ * Each entry has a record of fixed size, marked with the hash of the line of the entry (See
+ * {@link Dictionary#getEntryHash(int)}) : the statistics of a word stay attached to it from one run
+ * to another, even if lines are inserted or removed before it. The records are found through a hash
+ * table kept in the same file : the statistics don't use the Java heap, whatever the size of the
+ * vocabulary, they are updated with atomic operations on the mapped memory and they are saved by the
+ * operating system, without any serialization. A record is created the first time its entry is answered.
+ *
+ * Header layout (longs, little endian) : magic number, record size, hash of the languages of the
+ * vocabulary (See {@link #identity(String[])}), number of records, capacity (number of records the
+ * file can hold).
+ *
+ * Record layout (8 longs, little endian) : attempts, correct answers, current streak of
+ * correct answers, last time seen (ms since epoch), total response time (ms), accuracy
+ * (exponentially decayed, stored as the bits of a double), hash of the entry, unused.
+ *
+ * The records are followed by the hash table : twice as many slots as the capacity (2 longs each : the
+ * hash of an entry, and its record + 1, or 0 for an empty slot), searched from the hash (linear probing).
+ * When the file is full, it's grown to twice its capacity and the table is built again after the new records.
+ * @author Erwin Redoté
+ */
+public class LearningStatistics implements AutoCloseable {
+
+	private static final long MAGIC = 0x564F43415354_03L;
+	private static final int HEADER_SIZE = 64;
+	private static final int RECORD_SIZE_FIELD = 8, LANGUAGES = 16, RECORDS = 24, CAPACITY = 32;
+	private static final int RECORD_SIZE = 64, SLOT_SIZE = 16;
+	private static final int ATTEMPTS = 0, CORRECT = 8, STREAK = 16, LAST_SEEN = 24, LATENCY = 32, ACCURACY = 40, KEY = 48;
+	/** The weight of the last answer in the accuracy */
+	public static final double DECAY = 0.25;
+	/* The offsets in the file must stay ints */
+	private static final int MIN_CAPACITY = 1024, MAX_CAPACITY = 1 << 24;
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private final FileChannel channel;
+	/* The records are updated under the read lock, created and grown under the write lock */
+	private final StampedLock lock = new StampedLock();
+	private ByteBuffer buffer;
+	private int capacity;
+	private volatile Dictionary dictionary;
+
+	/**
+	 * Create statistics kept in memory only, outside of the Java heap (e.g : for a simulated learner).
+	 * @param entries the number of entries that will be recorded (The memory grows if needed)
+	 */
+	public LearningStatistics(int entries) {
+		channel = null;
+		try {
+			map(capacityFor(entries));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		writeHeader(0);
+	}
+
+	/**
+	 * Open (or create) the statistics file.
+	 * @param filePath the path of the file (relative to the project, e.g : "data/statistics.bin")
+	 * @param languages the languages of the vocabulary (See {@link Dictionary#getLanguages()})
+	 * @param entries the number of entries that will be recorded (The file grows if needed)
+	 * @throws IOException if the file can't be opened, isn't a statistics file or belongs to a vocabulary of other languages
+	 */
+	public LearningStatistics(String filePath, String[] languages, int entries) throws IOException {
+		Path path = Dictionary.resolve(filePath);
+		if (path.getParent() != null) Files.createDirectories(path.getParent());
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), HEADER_SIZE));
+			if (header.capacity() < HEADER_SIZE || (long) LONGS.get(header, 0) == 0) {
+				map(capacityFor(Math.max(entries, MIN_CAPACITY)));
+				writeHeader(identity(languages));
+				return;
+			}
+			long records = (long) LONGS.get(header, RECORDS), existing = (long) LONGS.get(header, CAPACITY);
+			if ((long) LONGS.get(header, 0) != MAGIC || (long) LONGS.get(header, RECORD_SIZE_FIELD) != RECORD_SIZE
+					|| existing <= 0 || existing > MAX_CAPACITY || Long.bitCount(existing) != 1 || records < 0 || records > existing) {
+				throw new IOException("The file " + filePath + " isn't a statistics file");
+			}
+			if ((long) LONGS.get(header, LANGUAGES) != identity(languages)) {
+				throw new IOException("The file " + filePath + " has the statistics of a vocabulary of other languages than " + String.join(", ", languages));
+			}
+			map((int) existing);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Use the identifiers of a version of the dictionary (See {@link Dictionary#getId(int)}) : each identifier
+	 * leads to the record of its entry. This must be done before recording the answers, and again each
+	 * time the dictionary is reloaded.
+	 * @param dictionary the version of the dictionary the identifiers come from
+	 */
+	public void bind(Dictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * Record an answer (Ignored if the entry isn't in the dictionary given to {@link #bind(Dictionary)}).
+	 * @param id the identifier of the entry
+	 * @param correct true if the answer was correct
+	 * @param latencyMs the time the user took to answer, in milliseconds
+	 */
+	public void record(int id, boolean correct, long latencyMs) {
+		long hash = hashOf(id);
+		if (hash == 0) return;
+		long stamp = lock.readLock();
+		try {
+			int record = find(hash);
+			if (record >= 0) {
+				update(record, correct, latencyMs);
+				return;
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		stamp = lock.writeLock();
+		try {
+			int record = find(hash);
+			update(record >= 0 ? record : create(hash), correct, latencyMs);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public long getAttempts(int id) {
+		return get(id, ATTEMPTS);
+	}
+
+	public long getCorrect(int id) {
+		return get(id, CORRECT);
+	}
+
+	public long getStreak(int id) {
+		return get(id, STREAK);
+	}
+
+	/**
+	 * Return the accuracy of the user for an entry : the recent answers count more than the old ones
+	 * (Each answer has a weight of {@value #DECAY} and the previous accuracy the rest).
+	 * @param id the identifier of the entry
+	 * @return the accuracy between 0 and 1, or {@link Double#NaN} if the entry was never asked
+	 */
+	public double getAccuracy(int id) {
+		return getAttempts(id) == 0 ? Double.NaN : Double.longBitsToDouble(get(id, ACCURACY));
+	}
+
+	/**
+	 * Return the last time the entry was asked.
+	 * @param id the identifier of the entry
+	 * @return the time in milliseconds since epoch, or 0 if it was never asked
+	 */
+	public long getLastSeen(int id) {
+		return get(id, LAST_SEEN);
+	}
+
+	/**
+	 * Return the mean response time of an entry.
+	 * @param id the identifier of the entry
+	 * @return the mean time in milliseconds, or 0 if it was never asked
+	 */
+	public long getMeanLatencyMs(int id) {
+		long attempts = getAttempts(id);
+		return attempts == 0 ? 0 : get(id, LATENCY) / attempts;
+	}
+
+	/**
+	 * Write the statistics on the disk now (The operating system does it anyway later).
+	 */
+	public void force() {
+		long stamp = lock.readLock();
+		try {
+			if (buffer instanceof MappedByteBuffer) ((MappedByteBuffer) buffer).force();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		force();
+		if (channel != null) channel.close();
+	}
+
+	/**
+	 * Return the identity of a vocabulary, written in the header of the file : the hash of its languages, in
+	 * order. The records are found from the text of their entries, so the statistics follow the vocabulary
+	 * when it's edited, moved or renamed, and only a vocabulary of other languages (whose entries would never
+	 * match, or would match with the columns swapped) is refused.
+	 */
+	private static long identity(String[] languages) {
+		return Dictionary.hash(String.join(",", languages));
+	}
+
+	private long hashOf(int id) {
+		Dictionary bound = dictionary;
+		return bound == null ? 0 : bound.getEntryHash(bound.getLine(id));
+	}
+
+	private long get(int id, int field) {
+		long hash = hashOf(id);
+		if (hash == 0) return 0;
+		long stamp = lock.readLock();
+		try {
+			int record = find(hash);
+			return record < 0 ? 0 : (long) LONGS.getVolatile(buffer, offset(record) + field);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private void update(int record, boolean correct, long latencyMs) {
+		int offset = offset(record);
+		long previousAttempts = (long) LONGS.getAndAdd(buffer, offset + ATTEMPTS, 1L);
+		LONGS.getAndAdd(buffer, offset + LATENCY, Math.max(0, latencyMs));
+		if (correct) {
+			LONGS.getAndAdd(buffer, offset + CORRECT, 1L);
+			LONGS.getAndAdd(buffer, offset + STREAK, 1L);
+		} else {
+			LONGS.setVolatile(buffer, offset + STREAK, 0L);
+		}
+		LONGS.setVolatile(buffer, offset + LAST_SEEN, System.currentTimeMillis());
+
+		double result = correct ? 1 : 0;
+		long bits, accuracy;
+		do {
+			bits = (long) LONGS.getVolatile(buffer, offset + ACCURACY);
+			double previous = Double.longBitsToDouble(bits);
+			accuracy = Double.doubleToRawLongBits(previousAttempts == 0 ? result : previous + DECAY * (result - previous));
+		} while (!LONGS.compareAndSet(buffer, offset + ACCURACY, bits, accuracy));
+	}
+
+	/**
+	 * Return the record of an entry (Under one of the locks).
+	 * @return the record, or -1 if the entry was never answered
+	 */
+	private int find(long hash) {
+		int mask = 2 * capacity - 1;
+		for (int slot = slotOf(hash, mask);; slot = (slot + 1) & mask) {
+			int position = slotOffset(capacity, slot);
+			long record = (long) LONGS.get(buffer, position + 8);
+			if (record == 0) return -1;
+			if ((long) LONGS.get(buffer, position) == hash) return (int) record - 1;
+		}
+	}
+
+	/**
+	 * Create the record of an entry (Under the write lock). The record is counted before it's indexed : if the
+	 * program stops in between, the record is lost but the table never leads to a record that doesn't exist.
+	 */
+	private int create(long hash) {
+		int record = (int) (long) LONGS.get(buffer, RECORDS);
+		if (record == capacity) grow();
+		int offset = offset(record);
+		/* The space may have held the previous table */
+		for (int field = 0; field < RECORD_SIZE; field += 8) LONGS.set(buffer, offset + field, 0L);
+		LONGS.set(buffer, offset + KEY, hash);
+		LONGS.setVolatile(buffer, RECORDS, (long) record + 1);
+		index(hash, record);
+		return record;
+	}
+
+	/**
+	 * Double the capacity (Under the write lock). The new table is placed after the new records and filled
+	 * before the header is updated : if the program stops in between, the file is still read with the old
+	 * table, which lies in the space of the records not created yet.
+	 */
+	private void grow() {
+		int larger = capacity * 2;
+		int records = (int) (long) LONGS.get(buffer, RECORDS);
+		if (larger > MAX_CAPACITY) throw new IllegalStateException("The statistics file is full");
+		try {
+			map(larger);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to grow the statistics file", e);
+		}
+		for (int position = slotOffset(larger, 0); position < slotOffset(larger, 2 * larger); position += 8) LONGS.set(buffer, position, 0L);
+		for (int record = 0; record < records; record++) index((long) LONGS.get(buffer, offset(record) + KEY), record);
+		LONGS.setVolatile(buffer, CAPACITY, (long) larger);
+	}
+
+	private void index(long hash, int record) {
+		int mask = 2 * capacity - 1;
+		int slot = slotOf(hash, mask);
+		while ((long) LONGS.get(buffer, slotOffset(capacity, slot) + 8) != 0) slot = (slot + 1) & mask;
+		LONGS.set(buffer, slotOffset(capacity, slot), hash);
+		LONGS.setVolatile(buffer, slotOffset(capacity, slot) + 8, (long) record + 1);
+	}
+
+	private void writeHeader(long identity) {
+		LONGS.set(buffer, RECORD_SIZE_FIELD, (long) RECORD_SIZE);
+		LONGS.set(buffer, LANGUAGES, identity);
+		LONGS.set(buffer, CAPACITY, (long) capacity);
+		LONGS.setVolatile(buffer, 0, MAGIC);
+	}
+
+	/**
+	 * Map the file with room for the specified number of records and their table. A bigger mapping sees the
+	 * same pages : the records written through the previous mapping are kept. Without file, they are copied.
+	 */
+	private void map(int capacity) throws IOException {
+		long size = slotOffset(capacity, 2 * capacity);
+		if (channel != null) {
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} else {
+			ByteBuffer memory = ByteBuffer.allocateDirect((int) size);
+			if (buffer != null) memory.put(buffer.duplicate().clear());
+			buffer = memory;
+		}
+		this.capacity = capacity;
+	}
+
+	private static int capacityFor(int entries) {
+		return Integer.highestOneBit(Math.max(entries, 1) * 2 - 1);
+	}
+
+	private static int offset(int record) {
+		return HEADER_SIZE + record * RECORD_SIZE;
+	}
+
+	private static int slotOffset(int capacity, int slot) {
+		return HEADER_SIZE + capacity * RECORD_SIZE + slot * SLOT_SIZE;
+	}
+
+	private static int slotOf(long hash, int mask) {
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+}
@@ -0,0 +1,276 @@
+package io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Timespan;
+
+/**
+ * This class is a small registry of counters and timers used to know where the time goes
+ * (dictionary loading, quiz logic, events dispatching and painting of the window).
+ *
+ * The metrics are disabled by default and cost a single constant check in that case.
+ * They are enabled with the system properties :
+ * <ul>
+ * <li>{@code -Dvocabulary.metrics=true} : record the metrics</li>
+ * <li>{@code -Dvocabulary.metrics.period=10} : print a text dump on the error output every 10 seconds</li>
+ * <li>{@code -Dvocabulary.metrics.json=metrics.json} : also write a JSON dump in the specified file</li>
+ * </ul>
+ * When enabled, a "vocabulary.Metric" event is also emitted for each timer at every
+ * chunk of a Java Flight Recorder recording.
+ * @author Erwin Redoté
+ */
+public final class Metrics {
+
+	public static final boolean ENABLED = Boolean.getBoolean("vocabulary.metrics");
+
+	private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<String, Counter>();
+	private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<String, Timer>();
+
+	static {
+		if (ENABLED) {
+			FlightRecorder.addPeriodicEvent(MetricEvent.class, Metrics::emitEvents);
+			startReporting(Long.getLong("vocabulary.metrics.period", 0), System.getProperty("vocabulary.metrics.json"));
+		}
+	}
+
+	private Metrics() {}
+
+	/**
+	 * Return the counter with the specified name (It's created if needed).
+	 * @param name the name of the counter (e.g : "dictionary.lookup")
+	 * @return the counter
+	 */
+	public static Counter counter(String name) {
+		return COUNTERS.computeIfAbsent(name, Counter::new);
+	}
+
+	/**
+	 * Return the timer with the specified name (It's created if needed).
+	 * @param name the name of the timer (e.g : "dictionary.load")
+	 * @return the timer
+	 */
+	public static Timer timer(String name) {
+		return TIMERS.computeIfAbsent(name, Timer::new);
+	}
+
+	/**
+	 * Return the start time of a measure that will be given to {@link Timer#record(long)}.
+	 * @return the current time in nanoseconds, or 0 if the metrics are disabled
+	 */
+	public static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Return a human readable dump of every metric.
+	 * @return the text dump
+	 */
+	public static String toText() {
+		StringBuilder builder = new StringBuilder();
+		for (Counter counter : new TreeMap<String, Counter>(COUNTERS).values()) {
+			builder.append(String.format("%-24s count=%d%n", counter.name, counter.get()));
+		}
+		for (Timer timer : new TreeMap<String, Timer>(TIMERS).values()) {
+			builder.append(String.format("%-24s count=%d mean=%.1fus p99<%dus max=%.1fus%n", timer.name, timer.getCount(),
+				timer.getMeanNanos() / 1000.0, timer.getQuantileNanos(0.99) / 1000, timer.getMaxNanos() / 1000.0));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Return a JSON dump of every metric.
+	 * @return the JSON dump
+	 */
+	public static String toJson() {
+		StringBuilder builder = new StringBuilder("{\"counters\":{");
+		String separator = "";
+		for (Counter counter : new TreeMap<String, Counter>(COUNTERS).values()) {
+			builder.append(separator).append('"').append(counter.name).append("\":").append(counter.get());
+			separator = ",";
+		}
+		builder.append("},\"timers\":{");
+		separator = "";
+		for (Timer timer : new TreeMap<String, Timer>(TIMERS).values()) {
+			builder.append(separator).append('"').append(timer.name).append("\":{\"count\":").append(timer.getCount())
+				.append(",\"totalNanos\":").append(timer.getTotalNanos())
+				.append(",\"maxNanos\":").append(timer.getMaxNanos())
+				.append(",\"buckets\":[");
+			for (int i = 0; i < Timer.BUCKETS; i++) {
+				builder.append(i == 0 ? "" : ",").append(timer.buckets[i].sum());
+			}
+			builder.append("]}");
+			separator = ",";
+		}
+		return builder.append("}}").toString();
+	}
+
+	private static void startReporting(long periodSeconds, String jsonFile) {
+		if (periodSeconds <= 0) return;
+		Thread reporter = new Thread(() -> {
+			while (true) {
+				try {
+					Thread.sleep(periodSeconds * 1000);
+				} catch (InterruptedException e) {
+					return;
+				}
+				System.err.print(toText());
+				if (jsonFile == null) continue;
+				try {
+					Files.writeString(Path.of(jsonFile), toJson(), StandardCharsets.UTF_8);
+				} catch (IOException e) {
+					System.err.printf("Error during metrics writing (%s).\n", jsonFile);
+				}
+			}
+		}, "metrics-reporter");
+		reporter.setDaemon(true);
+		reporter.start();
+	}
+
+	private static void emitEvents() {
+		for (Timer timer : TIMERS.values()) {
+			MetricEvent event = new MetricEvent();
+			event.name = timer.name;
+			event.count = timer.getCount();
+			event.total = timer.getTotalNanos();
+			event.max = timer.getMaxNanos();
+			event.commit();
+		}
+	}
+
+	/**
+	 * A lock-free counter.
+	 */
+	public static final class Counter {
+
+		private final String name;
+		private final LongAdder value = new LongAdder();
+
+		private Counter(String name) {
+			this.name = name;
+		}
+
+		public void increment() {
+			if (ENABLED) value.increment();
+		}
+
+		public void add(long amount) {
+			if (ENABLED) value.add(amount);
+		}
+
+		public long get() {
+			return value.sum();
+		}
+	}
+
+	/**
+	 * A lock-free timer keeping the count, the total, the maximum and an histogram of the
+	 * measured durations (Exponential buckets, the first one holds durations under 1 µs).
+	 */
+	public static final class Timer {
+
+		static final int BUCKETS = 32;
+
+		private final String name;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+		private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+		private Timer(String name) {
+			this.name = name;
+			for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+		}
+
+		/**
+		 * Record the time elapsed since the specified start.
+		 * @param startNanos the value returned by {@link Metrics#start()}
+		 */
+		public void record(long startNanos) {
+			if (ENABLED) recordNanos(System.nanoTime() - startNanos);
+		}
+
+		/**
+		 * Record a duration.
+		 * @param nanos the duration in nanoseconds
+		 */
+		public void recordNanos(long nanos) {
+			if (!ENABLED) return;
+			nanos = Math.max(nanos, 0);
+			count.increment();
+			total.add(nanos);
+			max.accumulate(nanos);
+			buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000))].increment();
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getTotalNanos() {
+			return total.sum();
+		}
+
+		public long getMaxNanos() {
+			return max.get();
+		}
+
+		public double getMeanNanos() {
+			long n = getCount();
+			return n == 0 ? 0 : (double) getTotalNanos() / n;
+		}
+
+		/**
+		 * Return the upper bound of the bucket containing the specified quantile.
+		 * @param quantile the quantile (Between 0 and 1)
+		 * @return the upper bound in nanoseconds
+		 */
+		public long getQuantileNanos(double quantile) {
+			long[] counts = new long[BUCKETS];
+			long n = 0;
+			for (int i = 0; i < BUCKETS; i++) n += counts[i] = buckets[i].sum();
+			long rank = Math.max(1, (long) Math.ceil(quantile * n)), seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if (seen >= rank) return 1000L << i;
+			}
+			return n == 0 ? 0 : 1000L << (BUCKETS - 1);
+		}
+	}
+
+	@Name("vocabulary.Metric")
+	@Label("Metric")
+	@Category("Vocabulary")
+	@Description("Cumulated values of a timer of the metrics registry")
+	@Period("1 s")
+	static final class MetricEvent extends Event {
+
+		@Label("Name")
+		String name;
+
+		@Label("Count")
+		long count;
+
+		@Label("Total")
+		@Timespan
+		long total;
+
+		@Label("Max")
+		@Timespan
+		long max;
+	}
+}
@@ -0,0 +1,273 @@
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class exports the results of the finished sessions (for the teachers) without
+ * blocking the window : the results are queued, and a background thread writes them
+ * by batches, in CSV or in JSON (one object per line).
+ *
+ * The queue is bounded : if the disk is too slow (e.g : a network drive) and the queue
+ * is full, a result waits a little then is dropped instead of blocking the game (See
+ * {@link #submit(Result)}). When the file is larger than the maximum size, it's renamed
+ * with the current time and a new one is started. The results still queued are written
+ * when the exporter is closed (e.g : by a close action of the window, See
+ * {@link Fenetre#ajouterActionFermeture(String, AutoCloseable)}).
+ * @author Erwin Redoté
+ */
+public class ResultExporter implements AutoCloseable {
+
+	public enum Format { CSV, JSON }
+
+	private static final int QUEUE_SIZE = 1024, BATCH_SIZE = 64;
+	private static final long SUBMIT_TIMEOUT_MS = 20, POLL_MS = 200, CLOSE_TIMEOUT_MS = 2000;
+	private static final String CSV_HEADER = "learner,end,seed,points,questions,durationMs,languages\n";
+	private static final Metrics.Counter WRITTEN = Metrics.counter("export.written");
+	private static final Metrics.Counter DROPPED = Metrics.counter("export.dropped");
+	private static final Metrics.Timer WRITE = Metrics.timer("export.write");
+
+	private final Path path;
+	private final Format format;
+	private final long maxBytes;
+	private final BlockingQueue<Result> queue = new ArrayBlockingQueue<Result>(QUEUE_SIZE);
+	private final Thread writer;
+	/* The results are queued under the read lock, the exporter is closed under the write lock */
+	private final ReadWriteLock state = new ReentrantReadWriteLock();
+	private volatile boolean closed = false;
+
+	/* Only used by the writer thread, reused for every batch */
+	private final List<Result> batch = new ArrayList<Result>(BATCH_SIZE);
+	private final StringBuilder text = new StringBuilder(4096);
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(16 * 1024);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private FileChannel channel;
+
+	/**
+	 * Create an exporter, the results are added at the end of the file if it already exists.
+	 * @param filePath the path of the file (relative to the project, e.g : "data/results/results.csv")
+	 * @param format the format of the file
+	 * @param maxBytes the size from which the file is renamed and a new one started
+	 * @throws IOException if the file can't be opened
+	 */
+	public ResultExporter(String filePath, Format format, long maxBytes) throws IOException {
+		this.path = Dictionary.resolve(filePath);
+		this.format = format;
+		this.maxBytes = Math.max(maxBytes, 1024);
+		if (path.getParent() != null) Files.createDirectories(path.getParent());
+		open();
+		this.writer = new Thread(this::run, "result-exporter");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Queue a result to export. If the queue is full, waits a few milliseconds at most.
+	 * @param result the result of the session
+	 * @return true if the result will be written, false if it was dropped (the queue is full or the exporter is closed)
+	 */
+	public boolean submit(Result result) {
+		boolean queued = false;
+		state.readLock().lock();
+		try {
+			queued = !closed && queue.offer(result, SUBMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			state.readLock().unlock();
+		}
+		if (!queued) DROPPED.increment();
+		return queued;
+	}
+
+	/**
+	 * Write the results still queued and close the file (Waits 2 seconds at most).
+	 */
+	@Override
+	public void close() {
+		if (!stop()) return;
+		try {
+			writer.join(CLOSE_TIMEOUT_MS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		try {
+			while (!closed || !queue.isEmpty()) {
+				Result first = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+				if (first == null) continue;
+				batch.add(first);
+				queue.drainTo(batch, BATCH_SIZE - 1);
+				write();
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			System.err.println("Unable to export the results, the next ones won't be saved.");
+			e.printStackTrace();
+			stop();
+			queue.clear();
+		} finally {
+			try {
+				channel.force(true);
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Mark the exporter as closed : once the write lock is released, no result can be queued anymore.
+	 * @return false if it was already closed
+	 */
+	private boolean stop() {
+		state.writeLock().lock();
+		try {
+			boolean open = !closed;
+			closed = true;
+			return open;
+		} finally {
+			state.writeLock().unlock();
+		}
+	}
+
+	private void write() throws IOException {
+		long start = Metrics.start();
+		text.setLength(0);
+		for (Result result : batch) {
+			if (format == Format.CSV) appendCsv(result);
+			else appendJson(result);
+		}
+
+		/* The whole batch is encoded first (in the same buffer, grown if needed) : the file is renamed from the number of bytes to write */
+		CharBuffer characters = CharBuffer.wrap(text);
+		encoder.reset();
+		buffer.clear();
+		while (encoder.encode(characters, buffer, true).isOverflow()) grow();
+		while (encoder.flush(buffer).isOverflow()) grow();
+		buffer.flip();
+		if (channel.size() > 0 && channel.size() + buffer.remaining() > maxBytes) rotate();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		WRITTEN.add(batch.size());
+		WRITE.record(start);
+	}
+
+	private void open() throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		if (format == Format.CSV && channel.size() == 0) {
+			text.setLength(0);
+			text.append(CSV_HEADER);
+			channel.write(StandardCharsets.UTF_8.encode(CharBuffer.wrap(text)));
+		}
+	}
+
+	private void rotate() throws IOException {
+		channel.force(true);
+		channel.close();
+		String name = path.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		String base = (dot > 0 ? name.substring(0, dot) : name) + "-" + System.currentTimeMillis();
+		String extension = dot > 0 ? name.substring(dot) : "";
+		Path rotated = path.resolveSibling(base + extension);
+		for (int i = 1; Files.exists(rotated); i++) {
+			rotated = path.resolveSibling(base + "-" + i + extension);
+		}
+		Files.move(path, rotated);
+		open();
+	}
+
+	private void grow() {
+		ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+		buffer.flip();
+		larger.put(buffer);
+		buffer = larger;
+	}
+
+	private void appendCsv(Result result) {
+		appendCsvText(result.learner).append(',').append(result.endMs).append(',').append(result.seed).append(',')
+				.append(result.points).append(',').append(result.questions).append(',').append(result.durationMs).append(',');
+		appendCsvText(result.languages).append('\n');
+	}
+
+	private StringBuilder appendCsvText(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return text.append(value);
+		text.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') text.append('"');
+			text.append(c);
+		}
+		return text.append('"');
+	}
+
+	private void appendJson(Result result) {
+		text.append("{\"learner\":");
+		appendJsonText(result.learner);
+		text.append(",\"end\":").append(result.endMs).append(",\"seed\":").append(result.seed)
+				.append(",\"points\":").append(result.points).append(",\"questions\":").append(result.questions)
+				.append(",\"durationMs\":").append(result.durationMs).append(",\"languages\":");
+		appendJsonText(result.languages);
+		text.append("}\n");
+	}
+
+	private void appendJsonText(String value) {
+		text.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') text.append('\\').append(c);
+			else if (c < 0x20) text.append(String.format("\\u%04x", (int) c));
+			else text.append(c);
+		}
+		text.append('"');
+	}
+
+	/**
+	 * The result of a finished session.
+	 */
+	public static final class Result {
+
+		public final String learner;
+		public final long endMs;
+		public final long seed;
+		public final int points, questions;
+		public final long durationMs;
+		public final String languages;
+
+		/**
+		 * @param learner the name of the learner
+		 * @param endMs the time the session ended (See {@link System#currentTimeMillis()})
+		 * @param seed the seed of the session (See {@link SessionLog})
+		 * @param points the number of correct answers
+		 * @param questions the number of questions
+		 * @param durationMs the time spent answering
+		 * @param languages the two languages of the quiz (e.g : "ANGLAIS,FRANCAIS")
+		 */
+		public Result(String learner, long endMs, long seed, int points, int questions, long durationMs, String languages) {
+			this.learner = learner != null ? learner : "";
+			this.endMs = endMs;
+			this.seed = seed;
+			this.points = points;
+			this.questions = questions;
+			this.durationMs = durationMs;
+			this.languages = languages != null ? languages : "";
+		}
+	}
+}
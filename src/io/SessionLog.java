@@ -0,0 +1,202 @@
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class records a quiz session in a compact binary file, to replay it later
+ * (See {@link #read(String)}).
+ *
+ * The file starts with a header (the seed of the random generator, the hash of the dictionary,
+ * the options and the two languages of the quiz), followed by one record per question and per
+ * answer. The numbers are written as variable length integers : a question usually takes
+ * about 4 bytes, an answer its text plus about 4 bytes.
+ * @author Erwin Redoté
+ */
+public class SessionLog implements AutoCloseable {
+
+	public static final int TIMED = 1, CHOICES = 2, ADAPTIVE = 4;
+
+	private static final int MAGIC = 0x564F4353;
+	private static final int VERSION = 1;
+	private static final int QUESTION = 'Q', ANSWER = 'A';
+
+	private final DataOutputStream output;
+	private final long start = System.currentTimeMillis();
+
+	/**
+	 * Create the log of a new session.
+	 * @param filePath the path of the file (relative to the project, e.g : "data/sessions/1.log")
+	 * @param seed the seed of the random generator of the session
+	 * @param dictionaryHash the hash of the dictionary (See {@link Dictionary#getVersionHash()})
+	 * @param options the options of the session ({@link #TIMED}, {@link #CHOICES}, {@link #ADAPTIVE})
+	 * @param languages the two languages of the quiz (The names given by "--languages=", or null)
+	 * @throws IOException if the file can't be created
+	 */
+	public SessionLog(String filePath, long seed, long dictionaryHash, int options, String[] languages) throws IOException {
+		Path path = Dictionary.resolve(filePath);
+		if (path.getParent() != null) Files.createDirectories(path.getParent());
+		this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+		this.output.writeInt(MAGIC);
+		this.output.writeByte(VERSION);
+		this.output.writeLong(seed);
+		this.output.writeLong(dictionaryHash);
+		this.output.writeLong(start);
+		this.output.writeByte(options);
+		writeText(languages != null ? String.join(",", languages) : "");
+		this.output.flush();
+	}
+
+	/**
+	 * Record a question.
+	 * @param id the identifier of the entry asked (See {@link Dictionary#getId(int)})
+	 * @param reverse true if the user has to translate the second language into the first one
+	 */
+	public synchronized void question(int id, boolean reverse) throws IOException {
+		this.output.writeByte(QUESTION);
+		writeNumber(this.output, id + 1L);
+		this.output.writeBoolean(reverse);
+		writeNumber(this.output, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Record the answer to the last question, and write the log on the disk.
+	 * @param answer the answer of the user
+	 * @param correct true if the answer is correct
+	 * @param timedOut true if the time allowed to answer was over
+	 * @param latencyMs the time the user took to answer, in milliseconds
+	 */
+	public synchronized void answer(String answer, boolean correct, boolean timedOut, long latencyMs) throws IOException {
+		this.output.writeByte(ANSWER);
+		this.output.writeByte((correct ? 1 : 0) | (timedOut ? 2 : 0));
+		writeNumber(this.output, Math.max(0, latencyMs));
+		writeText(answer != null ? answer : "");
+		this.output.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.output.close();
+	}
+
+	private void writeText(String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		writeNumber(this.output, bytes.length);
+		this.output.write(bytes);
+	}
+
+	/**
+	 * Read a session log.
+	 * @param filePath the path of the file (relative to the project)
+	 * @return the session
+	 * @throws IOException if the file can't be read or isn't a session log
+	 */
+	public static Session read(String filePath) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(Dictionary.resolve(filePath))))) {
+			if (input.readInt() != MAGIC || input.readUnsignedByte() != VERSION) throw new IOException("The file " + filePath + " isn't a session log");
+			long seed = input.readLong(), dictionaryHash = input.readLong(), start = input.readLong();
+			int options = input.readUnsignedByte();
+			String languages = readText(input);
+			List<Question> questions = new ArrayList<Question>();
+			Question last = null;
+			int type;
+			while ((type = input.read()) >= 0) {
+				if (type == QUESTION) {
+					int id = (int) readNumber(input) - 1;
+					boolean reverse = input.readBoolean();
+					last = new Question(id, reverse, readNumber(input));
+					questions.add(last);
+				} else if (type == ANSWER && last != null) {
+					int flags = input.readUnsignedByte();
+					last.latencyMs = readNumber(input);
+					last.answer = readText(input);
+					last.correct = (flags & 1) != 0;
+					last.timedOut = (flags & 2) != 0;
+				} else {
+					throw new IOException("Unknown record in " + filePath);
+				}
+			}
+			return new Session(seed, dictionaryHash, start, options, languages.isEmpty() ? null : languages.split(","), questions);
+		} catch (EOFException e) {
+			throw new IOException("The session log " + filePath + " is truncated", e);
+		}
+	}
+
+	private static String readText(DataInputStream input) throws IOException {
+		byte[] bytes = new byte[(int) readNumber(input)];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeNumber(OutputStream output, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			output.write((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.write((int) value);
+	}
+
+	private static long readNumber(InputStream input) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = input.read();
+			if (b < 0) throw new EOFException();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IOException("Malformed number");
+	}
+
+	/**
+	 * A recorded session.
+	 */
+	public static final class Session {
+
+		public final long seed;
+		public final long dictionaryHash;
+		public final long start;
+		public final int options;
+		public final String[] languages;
+		public final List<Question> questions;
+
+		private Session(long seed, long dictionaryHash, long start, int options, String[] languages, List<Question> questions) {
+			this.seed = seed;
+			this.dictionaryHash = dictionaryHash;
+			this.start = start;
+			this.options = options;
+			this.languages = languages;
+			this.questions = Collections.unmodifiableList(questions);
+		}
+	}
+
+	/**
+	 * A recorded question and its answer (The answer is null if the session ended before it).
+	 */
+	public static final class Question {
+
+		public final int id;
+		public final boolean reverse;
+		public final long timeMs;
+		public String answer;
+		public boolean correct, timedOut;
+		public long latencyMs;
+
+		private Question(int id, boolean reverse, long timeMs) {
+			this.id = id;
+			this.reverse = reverse;
+			this.timeMs = timeMs;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class gives access to the lines of a very large vocabulary file without keeping
+ * it in memory.
+ *
+ * The file is read once to copy it aside and to find where each block of {@code shardSize}
+ * lines (shard) begins. A shard is read and parsed the first time one of its lines is needed, and the
+ * least recently used shards are forgotten when the loaded shards exceed the memory cap. Only the
+ * position and the hash of each shard are kept for the lines that aren't loaded.
+ *
+ * The loaded shards are read without lock : a lock is only taken to load or forget a shard.
+ * @author Erwin Redoté
+ */
+final class ShardStore {
+
+	private static final Metrics.Counter LOADS = Metrics.counter("dictionary.shard.load");
+	private static final Metrics.Counter EVICTIONS = Metrics.counter("dictionary.shard.evict");
+
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	private final Path copy;
+	private final int shardSize;
+	private final long memoryCap;
+	private final String[] languages;
+	private final long[] offsets;
+	private final long[] shardHashes;
+	private final long versionHash;
+	private final int size;
+	/* The loaded shards by index, and the indexes of the loaded shards (Guarded by this) */
+	private final AtomicReferenceArray<Shard> loaded;
+	private final List<Integer> resident = new ArrayList<Integer>();
+	private volatile long residentBytes = 0;
+
+	/**
+	 * Find the shards of the specified file.
+	 *
+	 * The lines are copied to a private file while they are counted, and the shards are read
+	 * from this copy : the file can be edited (or emptied) while this version is still used,
+	 * the shards always have the lines they had when the store was created.
+	 * @param path the file
+	 * @param shardSize the number of lines of a shard
+	 * @param memoryCap the approximate memory (in bytes) the loaded shards may use
+	 */
+	ShardStore(Path path, int shardSize, long memoryCap) throws IOException {
+		this.shardSize = Math.max(1, shardSize);
+		this.memoryCap = memoryCap;
+		this.copy = Files.createTempFile("dictionary-", ".shards");
+		/* The copy is removed when this version isn't used anymore, or at the latest when the JVM exits */
+		Path removed = copy;
+		removed.toFile().deleteOnExit();
+		CLEANER.register(this, () -> {
+			try {
+				Files.deleteIfExists(removed);
+			} catch (IOException e) {
+				// Removed when the JVM exits
+			}
+		});
+
+		long[] starts = new long[16];
+		long[] hashes = new long[16];
+		int lines = 0, shards = 0, ignored = 0;
+		long position = 0, version = 0;
+		String header = null;
+		String[] names = null;
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+				OutputStream output = new BufferedOutputStream(Files.newOutputStream(copy), 1 << 16)) {
+			String text;
+			while ((text = reader.readLine()) != null) {
+				/* The lines are cleaned like the lines of a dictionary loaded in memory */
+				boolean first = header == null && lines == 0;
+				String line = Dictionary.cleanLine(text, first);
+				if (line == null) {
+					ignored++;
+					continue;
+				}
+				if (line.isEmpty()) continue;
+				if (first && line.startsWith("#")) {
+					/* The header isn't a line of the dictionary */
+					header = line;
+					continue;
+				}
+				if (names == null) {
+					/* The header, if any, has been read : the languages are known */
+					names = header != null ? Dictionary.parseHeader(header) : Dictionary.DEFAULT_LANGUAGES.clone();
+					version = Dictionary.hash(String.join(", ", names));
+				}
+				if (lines % this.shardSize == 0) {
+					if (shards == starts.length) {
+						starts = Arrays.copyOf(starts, shards * 2);
+						hashes = Arrays.copyOf(hashes, shards * 2);
+					}
+					starts[shards] = position;
+					hashes[shards++] = Dictionary.hash("");
+				}
+				long hash = Dictionary.hash(line);
+				version = Dictionary.combine(version, hash);
+				hashes[shards - 1] = Dictionary.combine(hashes[shards - 1], hash);
+				lines++;
+				byte[] bytes = (line + '\n').getBytes(StandardCharsets.UTF_8);
+				output.write(bytes);
+				position += bytes.length;
+			}
+		}
+		Dictionary.warnIgnored(ignored, path);
+		this.languages = names != null ? names : header != null ? Dictionary.parseHeader(header) : Dictionary.DEFAULT_LANGUAGES.clone();
+		this.versionHash = names != null ? version : Dictionary.hash(String.join(", ", languages));
+		this.size = lines;
+		this.shardHashes = Arrays.copyOf(hashes, shards);
+		this.offsets = Arrays.copyOf(starts, shards + 1);
+		this.offsets[shards] = position;
+		this.loaded = new AtomicReferenceArray<Shard>(shards);
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getShardSize() {
+		return shardSize;
+	}
+
+	long getMemoryCap() {
+		return memoryCap;
+	}
+
+	/**
+	 * Return the hash of the languages and of every line, in order (See {@link Dictionary#getVersionHash()}).
+	 */
+	long getVersionHash() {
+		return versionHash;
+	}
+
+	/**
+	 * Return the hash of the lines of a shard, computed while the lines were counted : two stores whose
+	 * shards have the same size and the same hash have the same lines (without reading them).
+	 */
+	long getShardHash(int shard) {
+		return shardHashes[shard];
+	}
+
+	/**
+	 * Return the hash of a line (See {@link Dictionary#hash(String)}).
+	 */
+	long getHash(int line) {
+		return shard(line / shardSize).hashes[line % shardSize];
+	}
+
+	String[] getLanguages() {
+		return languages.clone();
+	}
+
+	String getLine(int line) {
+		return shard(line / shardSize).lines[line % shardSize];
+	}
+
+	String getWord(int line, int column) {
+		return shard(line / shardSize).columns[column][line % shardSize];
+	}
+
+	String getKey(int line, int column) {
+		return shard(line / shardSize).getKey(column)[line % shardSize];
+	}
+
+	/**
+	 * Find the lines containing a fragment by reading every shard (No index is kept in memory).
+	 */
+	int[] search(String fragment, int limit) {
+		String text = fragment.toLowerCase(Locale.ROOT);
+		int[] found = new int[Math.max(0, limit)];
+		int count = 0;
+		for (int line = 0; line < size && count < found.length && !text.isEmpty(); line++) {
+			if (getLine(line).toLowerCase(Locale.ROOT).contains(text)) found[count++] = line;
+		}
+		return Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * Return the approximate memory used by the loaded shards.
+	 * @return the size in bytes
+	 */
+	long getResidentBytes() {
+		return residentBytes;
+	}
+
+	private Shard shard(int index) {
+		Shard shard = loaded.get(index);
+		if (shard == null) shard = loadShard(index);
+		/* Approximate recency : a lost update only makes the shard a little more likely to be forgotten */
+		shard.lastUsed = System.nanoTime();
+		return shard;
+	}
+
+	private synchronized Shard loadShard(int index) {
+		Shard shard = loaded.get(index);
+		if (shard != null) return shard;
+
+		shard = load(index);
+		LOADS.increment();
+		shard.lastUsed = System.nanoTime();
+		loaded.set(index, shard);
+		resident.add(index);
+		long bytes = residentBytes + shard.bytes;
+		while (bytes > memoryCap && resident.size() > 1) {
+			/* The least recently used shard, other than the one just loaded */
+			int eldest = 0;
+			for (int i = 1; i < resident.size() - 1; i++) {
+				if (loaded.get(resident.get(i)).lastUsed < loaded.get(resident.get(eldest)).lastUsed) eldest = i;
+			}
+			bytes -= loaded.getAndSet(resident.remove(eldest), null).bytes;
+			EVICTIONS.increment();
+		}
+		residentBytes = bytes;
+		return shard;
+	}
+
+	private Shard load(int index) {
+		String text;
+		try {
+			text = readText(copy, offsets[index], offsets[index + 1] - offsets[index]);
+		} catch (IOException e) {
+			System.err.printf("Error during file reading (%s). Creating empty shard.\n", copy);
+			e.printStackTrace();
+			text = "";
+		}
+		int count = Math.min(shardSize, size - index * shardSize);
+		String[] lines = new String[count];
+		int start = 0;
+		for (int i = 0; i < count; i++) {
+			int end = text.indexOf('\n', start);
+			if (end < 0) end = text.length();
+			lines[i] = text.substring(start, end);
+			start = Math.min(end + 1, text.length());
+		}
+		return new Shard(lines, languages.length, 2L * text.length());
+	}
+
+	private static String readText(Path path, long position, long length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) length);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0);
+		}
+		return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The parsed lines of a shard, stored by language like in {@link Dictionary}.
+	 */
+	private static final class Shard {
+
+		private final String[] lines;
+		private final long[] hashes;
+		private final String[][] columns;
+		private final AtomicReferenceArray<String[]> keys;
+		private final long bytes;
+		private long lastUsed;
+
+		private Shard(String[] lines, int languages, long textBytes) {
+			this.lines = lines;
+			this.hashes = new long[lines.length];
+			this.columns = new String[languages][lines.length];
+			this.keys = new AtomicReferenceArray<String[]>(languages);
+			for (int i = 0; i < lines.length; i++) {
+				hashes[i] = Dictionary.hash(lines[i]);
+				String[] words = Dictionary.parse(lines[i]);
+				for (int j = 0; j < languages; j++) columns[j][i] = j < words.length ? words[j] : "";
+			}
+			/* The text of the lines, plus the same text split into words, plus the arrays */
+			this.bytes = 2 * textBytes + 8L * lines.length * (languages + 2);
+		}
+
+		private String[] getKey(int column) {
+			String[] folded = keys.get(column);
+			if (folded != null) return folded;
+			TextFolder folder = new TextFolder();
+			folded = new String[lines.length];
+			for (int i = 0; i < lines.length; i++) folded[i] = folder.fold(columns[column][i]);
+			return keys.compareAndSet(column, null, folded) ? folded : keys.get(column);
+		}
+	}
+}
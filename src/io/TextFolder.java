@@ -0,0 +1,112 @@
+package io;
+
+import java.text.Normalizer;
+
+/**
+ * This class folds a text to a key used to compare answers : the case, the accents,
+ * the ligatures ("œ" becomes "oe"), the kind of apostrophe ("j’habite" and "j'habite")
+ * and the spaces (before, after and between the words) don't matter anymore.
+ *
+ * A folder reuses its buffer from one call to another : it isn't thread-safe, each
+ * thread (or each quiz) must have its own instance.
+ * @author Erwin Redoté
+ */
+public class TextFolder {
+
+	private final StringBuilder builder = new StringBuilder(32);
+
+	/**
+	 * Return the folded key of the specified text.
+	 * @param text the text (e.g : " J’habite  à Liège ")
+	 * @return the key (e.g : "j'habite a liege")
+	 */
+	public String fold(CharSequence text) {
+		return foldToBuffer(text).toString();
+	}
+
+	/**
+	 * Check if a text has the specified folded key, without creating a new string for ASCII texts.
+	 * @param text the text (e.g : the answer of the user)
+	 * @param key a key returned by {@link #fold(CharSequence)}
+	 * @return true if the text is equivalent to the key
+	 */
+	public boolean matches(CharSequence text, String key) {
+		return text != null && key != null && key.contentEquals(foldToBuffer(text));
+	}
+
+	private StringBuilder foldToBuffer(CharSequence text) {
+		builder.setLength(0);
+		if (text == null) return builder;
+		CharSequence source = isAscii(text) ? text : Normalizer.normalize(replaceApostrophes(text), Normalizer.Form.NFKD);
+		boolean space = false;
+		for (int i = 0; i < source.length(); i++) {
+			char c = source.charAt(i);
+			if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+				space = builder.length() > 0;
+				continue;
+			}
+			if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+			if (space) {
+				builder.append(' ');
+				space = false;
+			}
+			append(Character.toLowerCase(c));
+		}
+		return builder;
+	}
+
+	/**
+	 * Append a character, replacing the ones that aren't decomposed by the normalization.
+	 */
+	private void append(char c) {
+		switch (c) {
+		case '`':
+			builder.append('\'');
+			break;
+		case '“': case '”': case '«': case '»':
+			builder.append('"');
+			break;
+		case '‐': case '‑': case '–': case '—':
+			builder.append('-');
+			break;
+		case 'œ':
+			builder.append("oe");
+			break;
+		case 'æ':
+			builder.append("ae");
+			break;
+		case 'ß':
+			builder.append("ss");
+			break;
+		case '\uFEFF':
+			break;
+		default:
+			builder.append(c);
+		}
+	}
+
+	/**
+	 * Replace the apostrophes before the normalization, which would turn some of them into
+	 * a space and an accent (e.g : "´" becomes a space followed by U+0301).
+	 */
+	private static CharSequence replaceApostrophes(CharSequence text) {
+		char[] chars = null;
+		for (int i = 0; i < text.length(); i++) {
+			switch (text.charAt(i)) {
+			case '‘': case '’': case 'ʼ': case '´': case '′':
+				if (chars == null) chars = text.toString().toCharArray();
+				chars[i] = '\'';
+				break;
+			default:
+			}
+		}
+		return chars != null ? new String(chars) : text;
+	}
+
+	private static boolean isAscii(CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) > 0x7F) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,193 @@
+package io;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class finds the lines of a dictionary containing a fragment of text, in any language.
+ *
+ * Every sequence of three characters (trigram) of every line is indexed with the list of
+ * the lines containing it (postings). A search only reads the postings of the trigrams of
+ * the fragment, then checks the few remaining lines.
+ *
+ * The postings are compressed : the lines are sorted, so only the difference with the
+ * previous line is stored, as a variable length integer (7 bits per byte).
+ * @author Erwin Redoté
+ */
+public class TrigramIndex {
+
+	private final List<String> lines;
+	private final long[] trigrams;
+	private final int[] offsets;
+	private final int[] counts;
+	private final byte[] postings;
+
+	/**
+	 * Index the specified lines.
+	 * @param lines the lines of the dictionary
+	 */
+	TrigramIndex(List<String> lines) {
+		this.lines = lines;
+		Map<Long, Postings> building = new HashMap<Long, Postings>();
+		for (int line = 0; line < lines.size(); line++) {
+			String text = normalize(lines.get(line));
+			for (int i = 0; i + 3 <= text.length(); i++) {
+				building.computeIfAbsent(trigram(text, i), key -> new Postings()).add(line);
+			}
+		}
+
+		trigrams = new long[building.size()];
+		int i = 0;
+		for (long trigram : building.keySet()) trigrams[i++] = trigram;
+		Arrays.sort(trigrams);
+		offsets = new int[trigrams.length];
+		counts = new int[trigrams.length];
+		int size = 0;
+		for (Postings list : building.values()) size += list.size;
+		byte[] all = new byte[size];
+		size = 0;
+		for (i = 0; i < trigrams.length; i++) {
+			Postings list = building.get(trigrams[i]);
+			offsets[i] = size;
+			counts[i] = list.count;
+			System.arraycopy(list.bytes, 0, all, size, list.size);
+			size += list.size;
+		}
+		postings = all;
+	}
+
+	/**
+	 * Return the lines containing the specified fragment (The case is ignored).
+	 * @param fragment the text to find
+	 * @param limit the maximum number of lines to return
+	 * @return the lines, in ascending order
+	 */
+	public int[] search(String fragment, int limit) {
+		String text = normalize(fragment);
+		if (text.isEmpty() || limit <= 0) return new int[0];
+		int[] candidates = text.length() < 3 ? null : candidates(text);
+		if (candidates != null && candidates.length == 0) return candidates;
+
+		int[] found = new int[Math.min(limit, candidates == null ? lines.size() : candidates.length)];
+		int size = 0;
+		int total = candidates == null ? lines.size() : candidates.length;
+		for (int i = 0; i < total && size < found.length; i++) {
+			int line = candidates == null ? i : candidates[i];
+			if (normalize(lines.get(line)).contains(text)) found[size++] = line;
+		}
+		return Arrays.copyOf(found, size);
+	}
+
+	/**
+	 * Return the memory used by the index (without the indexed lines).
+	 * @return the approximate size in bytes
+	 */
+	public long getMemoryBytes() {
+		return 8L * trigrams.length + 4L * offsets.length + 4L * counts.length + postings.length;
+	}
+
+	/**
+	 * Return the number of distinct trigrams.
+	 * @return the number of trigrams
+	 */
+	public int getTrigramCount() {
+		return trigrams.length;
+	}
+
+	/**
+	 * Intersect the postings of every trigram of the text, starting with the shortest one.
+	 */
+	private int[] candidates(String text) {
+		int count = text.length() - 2;
+		int[] positions = new int[count];
+		for (int i = 0; i < count; i++) {
+			positions[i] = Arrays.binarySearch(trigrams, trigram(text, i));
+			if (positions[i] < 0) return new int[0];
+		}
+		int shortest = 0;
+		for (int i = 1; i < count; i++) {
+			if (counts[positions[i]] < counts[positions[shortest]]) shortest = i;
+		}
+		int[] result = decode(positions[shortest]);
+		int size = result.length;
+		for (int i = 0; i < count && size > 0; i++) {
+			if (i != shortest) size = intersect(result, size, positions[i]);
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Keep in {@code lines} only the lines also present in the postings at the specified position.
+	 * @return the new number of lines
+	 */
+	private int intersect(int[] lines, int size, int position) {
+		int offset = offsets[position], remaining = counts[position];
+		int line = -1, kept = 0, i = 0;
+		while (remaining > 0 && i < size) {
+			int delta = 0, shift = 0;
+			byte b;
+			do {
+				b = postings[offset++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			line += delta;
+			remaining--;
+			while (i < size && lines[i] < line) i++;
+			if (i < size && lines[i] == line) lines[kept++] = lines[i++];
+		}
+		return kept;
+	}
+
+	private int[] decode(int position) {
+		int[] lines = new int[counts[position]];
+		int offset = offsets[position], line = -1;
+		for (int i = 0; i < lines.length; i++) {
+			int delta = 0, shift = 0;
+			byte b;
+			do {
+				b = postings[offset++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			lines[i] = line += delta;
+		}
+		return lines;
+	}
+
+	private static String normalize(String text) {
+		return text.toLowerCase(Locale.ROOT);
+	}
+
+	private static long trigram(String text, int i) {
+		return (long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2);
+	}
+
+	/**
+	 * The postings of a trigram while the index is built.
+	 */
+	private static class Postings {
+
+		private byte[] bytes = new byte[4];
+		private int size = 0;
+		private int count = 0;
+		private int last = -1;
+
+		private void add(int line) {
+			/* A line containing the same trigram twice is only listed once */
+			if (line == last) return;
+			if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			int delta = line - last;
+			while ((delta & ~0x7F) != 0) {
+				bytes[size++] = (byte) (delta & 0x7F | 0x80);
+				delta >>>= 7;
+			}
+			bytes[size++] = (byte) delta;
+			last = line;
+			count++;
+		}
+	}
+}
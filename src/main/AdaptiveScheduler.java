@@ -0,0 +1,147 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import io.Dictionary;
+import io.LearningStatistics;
+
+/**
+ * This class chooses the next entry to ask so that the user answers correctly about
+ * {@value #TARGET_PERCENT}% of the questions : not too easy, not too hard.
+ *
+ * The chance of success of an entry is estimated from the accuracy of the user (See
+ * {@link LearningStatistics#getAccuracy(int)}) and from its mean response time, both kept
+ * between the sessions (See {@link LearningStatistics#getMeanLatencyMs(int)}). The
+ * entries are sorted into {@value #TIERS} tiers of chance of success (plus one for the
+ * entries never asked) : updating an entry moves it from a tier to another in constant
+ * time, and choosing an entry only looks at the tiers, whatever the size of the dictionary.
+ * @author Erwin Redoté
+ */
+public class AdaptiveScheduler {
+
+    private static final int TIERS = 10;
+    private static final int NEW = TIERS;
+    private static final int TARGET_PERCENT = 80;
+    private static final double NEW_ENTRY_RATE = 0.2;
+    private static final double LATENCY_WEIGHT = 0.3;
+
+    private final LearningStatistics statistics;
+    private final long limitMs;
+    private final int[][] members = new int[TIERS + 1][];
+    private final int[] counts = new int[TIERS + 1];
+    private int[] tierOf = new int[0];
+    private int[] positionOf = new int[0];
+    private int last = -1;
+
+    /**
+     * Sort the entries of a dictionary into tiers.
+     * @param dictionary the dictionary
+     * @param statistics the statistics of the learner
+     * @param limitMs the time allowed to answer a question
+     */
+    public AdaptiveScheduler(Dictionary dictionary, LearningStatistics statistics, long limitMs) {
+        this.statistics = statistics;
+        this.limitMs = Math.max(limitMs, 1);
+        for (int i = 0; i <= TIERS; i++) this.members[i] = new int[16];
+        sync(dictionary);
+    }
+
+    /**
+     * Add the entries of a new version of the dictionary that aren't in a tier yet
+     * (The removed entries are forgotten when they are chosen).
+     * @param dictionary the dictionary
+     */
+    public void sync(Dictionary dictionary) {
+        for (int line = 0; line < dictionary.size(); line++) {
+            int id = dictionary.getId(line);
+            ensureCapacity(id + 1);
+            if (this.tierOf[id] < 0) place(id, tier(id));
+        }
+    }
+
+    /**
+     * Update the tier of an entry after an answer (Once the answer is recorded in the statistics).
+     * @param id the identifier of the entry
+     */
+    public void update(int id) {
+        if (id < 0) return;
+        ensureCapacity(id + 1);
+        place(id, tier(id));
+    }
+
+    /**
+     * Choose the next entry to ask : a new entry from time to time, otherwise an entry of the
+     * tier closest to the target chance of success.
+     * @param dictionary the current version of the dictionary
+     * @param random the random generator
+     * @return the line of the entry in the dictionary, or -1 if no entry is left
+     */
+    public int next(Dictionary dictionary, Random random) {
+        while (true) {
+            int tier = this.counts[NEW] > 0 && random.nextDouble() < NEW_ENTRY_RATE ? NEW : closestTier();
+            if (tier < 0) return -1;
+            int id = this.members[tier][random.nextInt(this.counts[tier])];
+            if (id == this.last && this.counts[tier] > 1) id = this.members[tier][random.nextInt(this.counts[tier])];
+            int line = dictionary.getLine(id);
+            if (line >= 0) {
+                this.last = id;
+                return line;
+            }
+            remove(id);
+        }
+    }
+
+    /**
+     * Return the non-empty tier closest to the target, or the tier of new entries if the others are empty.
+     */
+    private int closestTier() {
+        int target = TARGET_PERCENT * TIERS / 100;
+        for (int distance = 0; distance < TIERS; distance++) {
+            if (target - distance >= 0 && this.counts[target - distance] > 0) return target - distance;
+            if (target + distance < TIERS && this.counts[target + distance] > 0) return target + distance;
+        }
+        return this.counts[NEW] > 0 ? NEW : -1;
+    }
+
+    /**
+     * Return the tier of an entry from its accuracy, lowered if the user needs a long time to answer.
+     */
+    private int tier(int id) {
+        double accuracy = this.statistics.getAccuracy(id);
+        if (Double.isNaN(accuracy)) return NEW;
+        long latencyMs = this.statistics.getMeanLatencyMs(id);
+        double success = accuracy - LATENCY_WEIGHT * Math.min(1.0, (double) latencyMs / this.limitMs);
+        return Math.max(0, Math.min(TIERS - 1, (int) (success * TIERS)));
+    }
+
+    private void place(int id, int tier) {
+        if (this.tierOf[id] == tier) return;
+        remove(id);
+        if (this.counts[tier] == this.members[tier].length) this.members[tier] = Arrays.copyOf(this.members[tier], this.counts[tier] * 2);
+        this.members[tier][this.counts[tier]] = id;
+        this.positionOf[id] = this.counts[tier]++;
+        this.tierOf[id] = tier;
+    }
+
+    /**
+     * Remove an entry from its tier, replacing it by the last entry of the tier.
+     */
+    private void remove(int id) {
+        int tier = this.tierOf[id];
+        if (tier < 0) return;
+        int moved = this.members[tier][--this.counts[tier]];
+        this.members[tier][this.positionOf[id]] = moved;
+        this.positionOf[moved] = this.positionOf[id];
+        this.tierOf[id] = -1;
+    }
+
+    private void ensureCapacity(int entries) {
+        if (entries <= this.tierOf.length) return;
+        int previous = this.tierOf.length;
+        int capacity = Math.max(entries, previous * 2);
+        this.tierOf = Arrays.copyOf(this.tierOf, capacity);
+        this.positionOf = Arrays.copyOf(this.positionOf, capacity);
+        Arrays.fill(this.tierOf, previous, capacity, -1);
+    }
+}
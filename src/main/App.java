@@ -1,47 +1,261 @@
 package main;
 
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import io.ActionFenetre;
 import io.AlignementTexte;
 import io.Auditeur;
+import io.ClassResults;
 import io.Dictionary;
+import io.DictionaryWatcher;
 import io.Fenetre;
+import io.Formateur;
+import io.LearningStatistics;
+import io.ResultExporter;
+import io.SessionLog;
 
 public class App implements Auditeur {
 
     private static final int WIDTH = 800, HEIGHT = 600;
-    private static final int MAX_WORDS = 10;
-    private static int currentWordCount = 1;
-    private static String[] currentWord = new String[2];
-    private Dictionary dictionary;
-    private int points = 0;
+    private static final int TICK_MS = 250;
+    private static final String DICTIONARY_FILE = "data/vocabulaire.txt";
+    private static final String STATISTICS_FILE = "data/statistiques%s.bin";
+    private static final String SESSION_FILE = "data/sessions/session-%d%s.log";
+    private static final String RESULTS_FILE = "data/results/results.%s";
+    private static final String CLASS_FILE = "data/classe.bin";
+    private static final long RESULTS_MAX_BYTES = 1024 * 1024;
+    private static final int TOP_SCORES = 3, HARDEST_WORDS = 3;
+    private DictionaryWatcher dictionaries;
+    private Quiz quiz;
+    private ClassStatistics classStatistics;
+    private final String name;
+    private String title = "";
+    private final Formateur text = new Formateur();
+    private final Map<String, AutoCloseable> resources = new LinkedHashMap<>();
+    private boolean timed, choices;
+    private long questionStart = System.nanoTime();
+    private long lastSecondsLeft = -1;
     
-    public App() {
-        this.dictionary = new Dictionary("data/vocabulaire.txt");
+    /**
+     * Create a game
+     * @param options The options of the command line (e.g : "--timed", "--languages=ANGLAIS,ESPAGNOL", "--export=csv")
+     * @param learner The name of the learner (His statistics are saved in a file of his own), or null for the user of the computer
+     * @param seed The seed of the random choices
+     * @param dictionaries The dictionary, shared by the games (See {@link #openDictionary(List)})
+     * @param classStatistics The statistics of the class, shared by the games
+     * @param exporter The exporter of the results, shared by the games (See {@link #openExporter(List)}), or null
+     */
+    public App(List<String> options, String learner, long seed, DictionaryWatcher dictionaries, ClassStatistics classStatistics, ResultExporter exporter) {
+        String[] languages = null;
+        for(String option : options) {
+            if(option.startsWith("--languages=")) languages = option.substring("--languages=".length()).split(",");
+        }
+        if(languages != null) checkLanguages(languages, dictionaries.getDictionary());
+        this.name = learner != null ? learner : System.getProperty("user.name", "?");
+        String suffix = learner != null ? "-" + learner.replaceAll("[^A-Za-z0-9_-]", "_") : "";
+        this.dictionaries = dictionaries;
+        /* A startup benchmark (and the training run of scripts/cds.sh) leaves no file behind */
+        boolean benchmark = options.contains("--startup-benchmark");
+        LearningStatistics statistics = null;
+        try {
+            if(!benchmark) {
+                Dictionary dictionary = dictionaries.getDictionary();
+                statistics = new LearningStatistics(String.format(STATISTICS_FILE, suffix), dictionary.getLanguages(), dictionary.size());
+                resources.put("statistics" + suffix, statistics);
+            }
+        } catch(IOException e) {
+            System.err.println("Unable to open the statistics file, the answers won't be saved.");
+            e.printStackTrace();
+        }
+        this.timed = options.contains("--timed");
+        this.choices = options.contains("--choices");
+        boolean adaptive = options.contains("--adaptive");
+        this.quiz = new Quiz(dictionaries::getDictionary, languages, seed, choices, statistics, adaptive ? Quiz.TIME_LIMIT_MS : 0);
+        this.classStatistics = classStatistics;
+        quiz.setClassStatistics(classStatistics, name);
+        quiz.setExporter(exporter);
+        if(benchmark) return;
+        try {
+            int flags = (timed ? SessionLog.TIMED : 0) | (choices ? SessionLog.CHOICES : 0) | (adaptive && statistics != null ? SessionLog.ADAPTIVE : 0);
+            SessionLog log = new SessionLog(String.format(SESSION_FILE, System.currentTimeMillis(), suffix), seed, quiz.getDictionary().getVersionHash(), flags, languages);
+            quiz.setLog(log);
+            resources.put("session log" + suffix, log);
+        } catch(IOException e) {
+            System.err.println("Unable to create the session log, the session won't be recorded.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Check that the languages chosen with "--languages=" are columns of the dictionary
+     * (Like the other options, an invalid value stops the game)
+     * @param languages The names of the languages
+     * @param dictionary The dictionary
+     * @throws IllegalArgumentException if a language isn't in the dictionary
+     */
+    static void checkLanguages(String[] languages, Dictionary dictionary) {
+        for(String language : languages) {
+            if(dictionary.getColumn(language.trim()) < 0) {
+                throw new IllegalArgumentException("Unknown language \"" + language.trim() + "\" in --languages= (The dictionary has "
+                    + String.join(", ", dictionary.getLanguages()) + ")");
+            }
+        }
+    }
+
+    /**
+     * Load the dictionary, as chosen by the options ("--compressed", "--shards=", "--shard-memory=")
+     * @param options The options of the command line
+     * @return The dictionary (Not watched yet, see {@link DictionaryWatcher#start()})
+     */
+    static DictionaryWatcher openDictionary(List<String> options) {
+        int shardSize = 0, shardMemoryMb = 64;
+        for(String option : options) {
+            if(option.startsWith("--shards=")) shardSize = Integer.parseInt(option.substring("--shards=".length()));
+            if(option.startsWith("--shard-memory=")) shardMemoryMb = Integer.parseInt(option.substring("--shard-memory=".length()));
+        }
+        if(options.contains("--compressed")) return new DictionaryWatcher(DICTIONARY_FILE, () -> new Dictionary(DICTIONARY_FILE, null, true));
+        return new DictionaryWatcher(DICTIONARY_FILE, shardSize, shardMemoryMb * 1024L * 1024L);
+    }
+
+    /**
+     * Open the exporter of the results chosen by the option "--export=csv" or "--export=json"
+     * @param options The options of the command line
+     * @return The exporter, or null if the results aren't exported
+     */
+    static ResultExporter openExporter(List<String> options) {
+        for(String option : options) {
+            if(!option.startsWith("--export=")) continue;
+            ResultExporter.Format format = ResultExporter.Format.valueOf(option.substring("--export=".length()).toUpperCase());
+            try {
+                return new ResultExporter(String.format(RESULTS_FILE, format.name().toLowerCase()), format, RESULTS_MAX_BYTES);
+            } catch(IOException e) {
+                System.err.println("Unable to open the results file, the results won't be exported.");
+                e.printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Open the statistics of the class, starting from the results of the previous games
+     * (Kept in memory only for a startup benchmark)
+     * @param options The options of the command line
+     * @param dictionary The dictionary
+     * @return The statistics of the class
+     */
+    static ClassStatistics openClassStatistics(List<String> options, Dictionary dictionary) {
+        if(!options.contains("--startup-benchmark")) {
+            try {
+                return new ClassStatistics(TOP_SCORES, new ClassResults(CLASS_FILE), dictionary);
+            } catch(IOException e) {
+                System.err.println("Unable to read the results of the class, only the results of this game will be shown.");
+                e.printStackTrace();
+            }
+        }
+        return new ClassStatistics(TOP_SCORES);
     }
 
     public static void main(String[] args) {
-        Fenetre window = new Fenetre("", WIDTH, HEIGHT, 1, 5);
-        App vocabulary = new App();
+        List<String> options = Arrays.asList(args);
+        List<String> names = Collections.singletonList(null);
+        long seed = new Random().nextLong();
+        for(String option : options) {
+            if(option.startsWith("--learner=")) names = Collections.singletonList(option.substring("--learner=".length()));
+            if(option.startsWith("--players=")) names = Arrays.asList(option.substring("--players=".length()).split(","));
+            if(option.startsWith("--seed=")) seed = Long.parseLong(option.substring("--seed=".length()));
+        }
+        List<String> learners = names;
+        int players = learners.size();
+        long sharedSeed = seed;
 
-        vocabulary.init();
+        /* The dictionary is loaded while the windows are created on the event dispatch thread */
+        CompletableFuture<List<App>> games = CompletableFuture.supplyAsync(() -> {
+            DictionaryWatcher dictionaries = openDictionary(options);
+            ResultExporter exporter = openExporter(options);
+            ClassStatistics classStatistics = openClassStatistics(options, dictionaries.getDictionary());
+            List<App> created = new ArrayList<>(players);
+            /* The players of a duel get the same questions : same dictionary, same seed */
+            for(String learner : learners) created.add(new App(options, learner != null ? learner.trim() : null, sharedSeed, dictionaries, classStatistics, exporter));
+            created.get(0).resources.put("dictionary", dictionaries);
+            if(exporter != null) created.get(0).resources.put("export", exporter);
+            created.get(0).resources.put("class statistics", classStatistics);
+            dictionaries.start();
+            for(App vocabulary : created) vocabulary.quiz.generateWord();
+            return created;
+        });
+        CompletableFuture<List<Fenetre>> windows = new CompletableFuture<>();
+        EventQueue.invokeLater(() -> {
+            try {
+                List<Fenetre> created = new ArrayList<>(players);
+                for(int i = 0; i < players; i++) {
+                    Fenetre window = new Fenetre("", WIDTH, HEIGHT, 1, 5);
+                    window.setRedimensionnable(true);
+                    if(players > 1) window.setPosition(i * WIDTH, 0);
+                    created.add(window);
+                }
+                windows.complete(created);
+            } catch(RuntimeException e) {
+                windows.completeExceptionally(e);
+            }
+        });
+        windows.thenAcceptBothAsync(games, (created, vocabularies) -> {
+            /* Closing any window ends the program and closes the files of every game, once none of them handles an event */
+            for(int i = 0; i < players; i++) vocabularies.get(i).resources.forEach(created.get(i)::ajouterActionFermeture);
+            for(int i = 0; i < players; i++) {
+                if(players > 1) vocabularies.get(i).title = vocabularies.get(i).name;
+                vocabularies.get(i).show(created.get(i));
+            }
+            if(options.contains("--search")) new SearchPanel(vocabularies.get(0).dictionaries).show();
+            if(options.contains("--startup-benchmark")) EventQueue.invokeLater(App::reportStartup);
+        }, EventQueue::invokeLater)
+            .exceptionally(e -> {
+                System.err.println("Unable to start the game.");
+                e.printStackTrace();
+                System.exit(1);
+                return null;
+            });
+    }
 
-        window.setAuditeur(vocabulary);
-        window.ajouterEtiquette("currentWord", "Question n° "+currentWordCount, AlignementTexte.CENTRE, 0, 0);
-        window.ajouterEtiquette("wordToTranslate", vocabulary.getSentence(), AlignementTexte.CENTRE, 1, 0);
-        window.ajouterZoneSaisie("word", "", 2, 0);
-        window.ajouterEtiquette("prevResult", "", AlignementTexte.CENTRE, 3, 0);
+    /**
+     * Add the elements of the game to the window and show the first question (On the event dispatch thread)
+     * @param window The window
+     */
+    private void show(Fenetre window) {
+        if(timed) window.setAuditeur(this, TICK_MS);
+        else window.setAuditeur(this);
+        window.setTitre(title);
+        window.ajouterEtiquetteDessinee("currentWord", "Question n° "+quiz.getQuestionNumber(), AlignementTexte.CENTRE, 0, 0);
+        window.ajouterEtiquetteDessinee("wordToTranslate", getSentence().toString(), AlignementTexte.CENTRE, 1, 0);
+        if(choices) window.ajouterListeDeroulante("word", "", quiz.getChoices(), 2, 0);
+        else window.ajouterZoneSaisie("word", "", 2, 0);
+        window.ajouterEtiquetteDessinee("prevResult", "", AlignementTexte.CENTRE, 3, 0);
         window.ajouterBouton("buttonOk", "Vérifier", 4, 0);
         
         window.afficher();
+        questionStart = System.nanoTime();
     }
 
     /**
-     * Init the game
+     * Print the time between the start of the JVM and the first question, then quit
+     * (Once the events queued by the first display are handled)
      */
-    private void init() {
-       currentWord = generateWord();
+    private static void reportStartup() {
+        Optional<Instant> launch = ProcessHandle.current().info().startInstant();
+        if(launch.isPresent()) System.out.println("First question shown in " + Duration.between(launch.get(), Instant.now()).toMillis() + " ms");
+        else System.out.println("Unable to read the start time of the process.");
+        System.exit(0);
     }
 
     /**
@@ -49,93 +263,110 @@ public class App implements Auditeur {
      * @param instance The window
      */
     private void endGame(Fenetre instance) {
-        instance.setValeur("wordToTranslate", "Vous avez " + points + "/" + MAX_WORDS + " !");
+        instance.setValeur("wordToTranslate", "Vous avez " + quiz.getPoints() + "/" + Quiz.MAX_WORDS + " !");
         instance.setValeur("word", "");
+        Dictionary dictionary = quiz.getDictionary();
+        StringBuilder scores = new StringBuilder("Meilleurs scores :");
+        for(ClassStatistics.Score score : classStatistics.getTopScores()) scores.append(" ").append(score).append(" ;");
+        instance.setValeur("currentWord", scores.substring(0, scores.length() - 1));
+
+        StringBuilder hardest = new StringBuilder("Mots difficiles :");
+        for(ClassStatistics.WordCounters word : classStatistics.getHardestWords(HARDEST_WORDS)) {
+            int line = dictionary.getLine(word.id);
+            if(line >= 0) hardest.append(String.format(" %s (%.0f %% d'erreurs)", dictionary.getWords(line)[0], 100 * word.getErrorRate()));
+        }
+        instance.setValeur("prevResult", hardest.toString());
+        if(timed) {
+            instance.setTitre(title);
+            ResponseTimes responseTimes = quiz.getResponseTimes();
+            int slowest = responseTimes.getSlowestEntry();
+            int line = dictionary.getLine(slowest);
+            if(line >= 0) instance.setValeur("prevResult", String.format("%s - Mot le plus lent : %s (%.1f s)",
+                hardest, dictionary.getWords(line)[0], responseTimes.getMeanMs(slowest) / 1000.0));
+        }
     }
 
     @Override
-    public void executerAction(Fenetre instance, String elementNane, ActionFenetre action, String value) {
+    public synchronized void executerAction(Fenetre instance, String elementNane, ActionFenetre action, String value) {
+        if(action == ActionFenetre.MINUTEUR) {
+            if(timed && !quiz.isOver()) checkDeadline(instance);
+            return;
+        }
         if(action == ActionFenetre.PRESSION_TOUCHE && value.equalsIgnoreCase("enter")) {
-            if(currentWordCount > MAX_WORDS) endGame(instance);
+            if(quiz.isOver()) endGame(instance);
             else checkWord(instance, instance.getValeur("word"));
             return;
         }
         switch(elementNane) {
         case "buttonOk":
-            checkWord(instance, instance.getValeur("word"));
-            if(currentWordCount > MAX_WORDS) endGame(instance);
+            if(!quiz.isOver()) checkWord(instance, instance.getValeur("word"));
+            if(quiz.isOver()) endGame(instance);
             break;
         }
     }
 
+    /**
+     * Show the remaining time and skip the question once its deadline is reached
+     * @param instance The window
+     */
+    private void checkDeadline(Fenetre instance) {
+        long elapsedMs = (System.nanoTime() - questionStart) / 1_000_000;
+        if(elapsedMs >= Quiz.TIME_LIMIT_MS) {
+            checkWord(instance, instance.getValeur("word"), true);
+            if(quiz.isOver()) endGame(instance);
+            return;
+        }
+
+        /* Only refresh the title when the displayed second changes */
+        long secondsLeft = (Quiz.TIME_LIMIT_MS - elapsedMs + 999) / 1000;
+        if(secondsLeft != lastSecondsLeft) {
+            lastSecondsLeft = secondsLeft;
+            instance.setTitre((title.isEmpty() ? "" : title + " - ") + "Temps restant : " + secondsLeft + " s");
+        }
+    }
+
     /**
      * Check if the word is correct or not
      * @param word The word to check
      */
     private void checkWord(Fenetre instance, String word) {
-        boolean hasNoError = word.equalsIgnoreCase(currentWord[1]);
-        if(hasNoError) this.points++;
+        checkWord(instance, word, false);
+    }
+
+    /**
+     * Check if the word is correct or not
+     * @param word The word to check
+     * @param timedOut true if the time allowed to answer is over (The answer is then incorrect)
+     */
+    private void checkWord(Fenetre instance, String word, boolean timedOut) {
+        String[] currentWord = quiz.getCurrentWord();
+        boolean hasNoError = quiz.checkWord(word, System.nanoTime() - questionStart, timedOut);
         
         /* Show the error to the user (If there is one or more error(s)) */
-        instance.setValeur("prevResult", "Dernière réponse : "+word
-            +" (" + (hasNoError ? "Correcte" : "Incorrecte") + ") "
-            +(hasNoError ? "" : currentWord[0]+" -> : "+currentWord[1])
-        );
+        text.effacer().ajouter(timedOut ? "Temps écoulé : " : "Dernière réponse : ").ajouter(word)
+            .ajouter(" (").ajouter(hasNoError ? "Correcte" : "Incorrecte").ajouter(") ");
+        if(!hasNoError) text.ajouter(currentWord[0]).ajouter(" -> : ").ajouter(currentWord[1]);
+        instance.setValeur("prevResult", text);
+        if(quiz.isOver()) return;
 
         /* Generate a new word */
-        currentWord = generateWord();
+        quiz.generateWord();
 
         /* Reset state */
-        instance.setValeur("currentWord", "Question n° " + currentWordCount++);
+        instance.setValeur("currentWord", text.effacer().ajouter("Question n° ").ajouter(quiz.getQuestionNumber()));
         instance.setValeur("word", "");
         instance.setValeur("wordToTranslate", getSentence());
+        if(choices) instance.setOptions("word", quiz.getChoices());
+        questionStart = System.nanoTime();
+        lastSecondsLeft = -1;
     }
 
     /**
-     * Generate randomly a word contained in the current dictionary
-     * @return The randomly generated word
-     */
-    private String[] generateWord() {
-        String[] words = dictionary.getWords(randomize(0, dictionary.size() - 1));
-        return randomize(0, 2) == 1 ? combine(swap(words), "ANGLAIS") : combine(words, "FRANCAIS");
-    }
-
-    /**
-     * Swap the two arguments of the array
-     * @param words The array to swap
-     * @return The swaped array
+     * Return the question shown to the user
+     * @return The text (Written in a reused buffer, valid until the next text is written)
      */
-    private String[] swap(String[] words) {
-        String tmp = words[0];
-        words[0] = words[1];
-        words[1] = tmp;
-        return words;
-    }
-
-    /**
-     * Generate a random number between min and max
-     * @param min The minimum number
-     * @param max The maximum number
-     * @return The randomly generated number
-     */
-    private int randomize(int min, int max) {
-        return (int) (Math.random() * (max - min)) + min;
-    }
-
-    /**
-     * 
-     * @param a The array of words
-     * @param lang The language the user will translate to
-     * @return An array containing 3 elements '0' the word to translate '1' the translation (For results checking) and '2' 
-     * the language in wich the user will translate the word.
-     */
-    private String[] combine(String[] a, String lang) {
-        String[] copy = Arrays.copyOf(a, 3);
-        copy[2] = lang;
-        return copy;
-    }
-
-    private String getSentence() {
-        return String.format("Traduisez en %s : %s", currentWord[2], currentWord[0]);
+    private CharSequence getSentence() {
+        String[] currentWord = quiz.getCurrentWord();
+        return text.effacer().ajouter("Traduisez en ").ajouter(currentWord[2]).ajouter(" : ").ajouter(currentWord[0]);
     }
-}   
\ No newline at end of file
+}
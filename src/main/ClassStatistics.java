@@ -0,0 +1,275 @@
+package main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.ClassResults;
+import io.Dictionary;
+
+/**
+ * This class gathers the results of every session of a class : the best scores and the
+ * error rate of each word.
+ *
+ * Many sessions may end at the same time (several windows, the {@link Simulator}) : the
+ * counters are striped ({@link LongAdder}) and the best scores are kept in a concurrent
+ * skip list, so no global lock is taken. A snapshot (See {@link #getTopScores()},
+ * {@link #getHardestWords(int)}) reads the counters while they change : it's meant to be
+ * shown, not to be exact to the last answer.
+ *
+ * The statistics may start from the results of the previous runs (See {@link ClassResults}) :
+ * they are loaded before anything is ranked, and the results of this run are added to the
+ * stored ones when the statistics are closed.
+ * @author Erwin Redoté
+ */
+public class ClassStatistics implements AutoCloseable {
+
+    private static final Comparator<Score> RANKING = Comparator.comparingInt((Score score) -> -score.points)
+        .thenComparingLong(score -> score.durationMs)
+        .thenComparingLong(score -> score.sequence);
+
+    private final int topSize;
+    private final ConcurrentSkipListSet<Score> topScores = new ConcurrentSkipListSet<>(RANKING);
+    private final AtomicInteger topCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Integer, WordCounters> words = new ConcurrentHashMap<>();
+    private final LongAdder sessions = new LongAdder(), points = new LongAdder(), questions = new LongAdder();
+    private final ClassResults store;
+    /* The stored results : the totals, the words not in the dictionary yet, and the sequence of the first new score */
+    private final long storedSessions, storedPoints, storedQuestions;
+    private final Map<Long, long[]> storedWords = new ConcurrentHashMap<>();
+    private final long firstNewScore;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Create empty statistics, kept in memory only
+     * @param topSize The number of best scores to keep
+     */
+    public ClassStatistics(int topSize) {
+        this.topSize = Math.max(topSize, 1);
+        this.store = null;
+        this.storedSessions = this.storedPoints = this.storedQuestions = 0;
+        this.firstNewScore = 0;
+    }
+
+    /**
+     * Create statistics starting from the stored results of the class
+     * @param topSize The number of best scores to keep
+     * @param store The stored results, updated when the statistics are closed
+     * @param dictionary The dictionary, to find the identifiers of the stored words
+     * @throws IOException if the stored results can't be read
+     */
+    public ClassStatistics(int topSize, ClassResults store, Dictionary dictionary) throws IOException {
+        this.topSize = Math.max(topSize, 1);
+        this.store = store;
+        ClassResults.Snapshot snapshot = store.read();
+        this.storedSessions = snapshot.sessions;
+        this.storedPoints = snapshot.points;
+        this.storedQuestions = snapshot.questions;
+        for(ClassResults.Score score : snapshot.scores) {
+            if(topScores.size() < this.topSize) topScores.add(new Score(score.learner, score.points, score.questions, score.durationMs, sequence.getAndIncrement()));
+        }
+        topCount.set(topScores.size());
+        this.firstNewScore = sequence.get();
+        storedWords.putAll(snapshot.words);
+        for(int line = 0; line < dictionary.size(); line++) {
+            long hash = dictionary.getEntryHash(line);
+            long[] stored = storedWords.remove(hash);
+            if(stored != null) words.put(dictionary.getId(line), new WordCounters(dictionary.getId(line), hash, stored));
+        }
+    }
+
+    /**
+     * Record an answer
+     * @param id The identifier of the entry (See {@link io.Dictionary#getId(int)})
+     * @param hash The hash of the entry, to find it again in the next runs (See {@link io.Dictionary#getEntryHash(int)})
+     * @param correct true if the answer was correct
+     */
+    public void recordAnswer(int id, long hash, boolean correct) {
+        if(id < 0) return;
+        WordCounters counters = words.computeIfAbsent(id, key -> new WordCounters(key, hash, storedWords.remove(hash)));
+        counters.attempts.increment();
+        if(!correct) counters.errors.increment();
+    }
+
+    /**
+     * Record the result of a finished session
+     * @param learner The name of the learner
+     * @param sessionPoints The number of correct answers
+     * @param sessionQuestions The number of questions
+     * @param durationMs The duration of the session
+     */
+    public void recordSession(String learner, int sessionPoints, int sessionQuestions, long durationMs) {
+        sessions.increment();
+        points.add(sessionPoints);
+        questions.add(sessionQuestions);
+
+        /* The score only enters the list if it's better than the last one, the list is then trimmed */
+        Score score = new Score(learner, sessionPoints, sessionQuestions, durationMs, sequence.getAndIncrement());
+        if(topCount.get() >= topSize) {
+            Score last = topScores.isEmpty() ? null : topScores.last();
+            if(last != null && RANKING.compare(score, last) > 0) return;
+        }
+        topScores.add(score);
+        if(topCount.incrementAndGet() > topSize && topScores.pollLast() != null) topCount.decrementAndGet();
+    }
+
+    /**
+     * Return the best scores
+     * @return The scores, from the best one
+     */
+    public List<Score> getTopScores() {
+        List<Score> scores = new ArrayList<>(topSize);
+        for(Score score : topScores) {
+            if(scores.size() == topSize) break;
+            scores.add(score);
+        }
+        return scores;
+    }
+
+    /**
+     * Return the words with the highest error rate (A word asked only a few times counts
+     * as if it had also been answered once correctly and once incorrectly)
+     * @param count The number of words
+     * @return The words, from the hardest one
+     */
+    public List<WordCounters> getHardestWords(int count) {
+        /* The counters keep changing : they are read once, before sorting */
+        List<WordCounters> all = new ArrayList<>(words.values());
+        double[] rates = new double[all.size()];
+        Integer[] order = new Integer[all.size()];
+        for(int i = 0; i < order.length; i++) {
+            order[i] = i;
+            rates[i] = (all.get(i).getErrors() + 1.0) / (all.get(i).getAttempts() + 2.0);
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(rates[b], rates[a]));
+        List<WordCounters> hardest = new ArrayList<>(Math.min(count, order.length));
+        for(int i = 0; i < order.length && i < count; i++) hardest.add(all.get(order[i]));
+        return hardest;
+    }
+
+    /**
+     * Return the error rate of a word
+     * @param id The identifier of the entry
+     * @return The error rate between 0 and 1, or 0 if the word was never asked
+     */
+    public double getErrorRate(int id) {
+        WordCounters counters = words.get(id);
+        return counters != null ? counters.getErrorRate() : 0;
+    }
+
+    public long getSessions() {
+        return storedSessions + sessions.sum();
+    }
+
+    /**
+     * Return the mean score of the sessions
+     * @return The mean percentage of correct answers (0 if no session was recorded)
+     */
+    public double getMeanScore() {
+        long total = storedQuestions + questions.sum();
+        return total == 0 ? 0 : 100.0 * (storedPoints + points.sum()) / total;
+    }
+
+    /**
+     * Add the results of this run to the stored results (Nothing is done for statistics kept in memory only)
+     * @throws IOException if the stored results can't be updated
+     */
+    @Override
+    public void close() throws IOException {
+        if(store == null || !closed.compareAndSet(false, true)) return;
+        List<Score> newScores = new ArrayList<>();
+        for(Score score : getTopScores()) {
+            if(score.sequence >= firstNewScore) newScores.add(score);
+        }
+        store.update(snapshot -> {
+            snapshot.sessions += sessions.sum();
+            snapshot.points += points.sum();
+            snapshot.questions += questions.sum();
+            for(WordCounters word : words.values()) {
+                long attempts = word.attempts.sum(), errors = word.errors.sum();
+                if(attempts == 0) continue;
+                long[] stored = snapshot.words.computeIfAbsent(word.hash, hash -> new long[2]);
+                stored[0] += attempts;
+                stored[1] += errors;
+            }
+            /* The scores stored by the other games in the meantime are ranked with the new ones */
+            List<Score> ranked = new ArrayList<>();
+            for(ClassResults.Score score : snapshot.scores) ranked.add(new Score(score.learner, score.points, score.questions, score.durationMs, ranked.size()));
+            for(Score score : newScores) ranked.add(new Score(score.learner, score.points, score.questions, score.durationMs, ranked.size()));
+            ranked.sort(RANKING);
+            snapshot.scores.clear();
+            for(Score score : ranked.subList(0, Math.min(topSize, ranked.size()))) {
+                snapshot.scores.add(new ClassResults.Score(score.learner, score.points, score.questions, score.durationMs));
+            }
+        });
+    }
+
+    /**
+     * The score of a session
+     */
+    public static final class Score {
+
+        public final String learner;
+        public final int points, questions;
+        public final long durationMs;
+        private final long sequence;
+
+        private Score(String learner, int points, int questions, long durationMs, long sequence) {
+            this.learner = learner;
+            this.points = points;
+            this.questions = questions;
+            this.durationMs = durationMs;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public String toString() {
+            return learner + " " + points + "/" + questions;
+        }
+    }
+
+    /**
+     * The answers given to a word
+     */
+    public static final class WordCounters {
+
+        public final int id;
+        private final long hash, storedAttempts, storedErrors;
+        /* The answers of this run only */
+        private final LongAdder attempts = new LongAdder(), errors = new LongAdder();
+
+        private WordCounters(int id, long hash, long[] stored) {
+            this.id = id;
+            this.hash = hash;
+            this.storedAttempts = stored != null ? stored[0] : 0;
+            this.storedErrors = stored != null ? stored[1] : 0;
+        }
+
+        public long getAttempts() {
+            return storedAttempts + attempts.sum();
+        }
+
+        public long getErrors() {
+            return storedErrors + errors.sum();
+        }
+
+        /**
+         * Return the error rate of the word
+         * @return The error rate between 0 and 1
+         */
+        public double getErrorRate() {
+            long count = getAttempts();
+            return count == 0 ? 0 : (double) getErrors() / count;
+        }
+    }
+}
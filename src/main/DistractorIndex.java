@@ -0,0 +1,207 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.Dictionary;
+
+/**
+ * This class finds plausible wrong answers (distractors) for a multiple-choice question.
+ *
+ * The index is computed once per dictionary : for each column (language), the entries
+ * are grouped by the length of their word and by the pairs of letters (bigrams) they
+ * contain. A question then only looks at a few entries of the groups of its answer
+ * instead of comparing it to the whole dictionary. The words are compared by their folded
+ * keys (See {@link Dictionary#getKey(int, int)}) : a word that would be accepted as the
+ * answer is never a wrong answer. A sharded dictionary isn't indexed (that
+ * would read all its shards) : the wrong answers are chosen among the lines around the entry.
+ * @author Erwin Redoté
+ */
+public class DistractorIndex {
+
+    private static final int SAMPLE = 24;
+
+    private final Dictionary dictionary;
+    private final Column[] columns;
+
+    /**
+     * Index the words of the specified dictionary.
+     * Each language is indexed the first time one of its words is asked.
+     * @param dictionary the dictionary
+     */
+    public DistractorIndex(Dictionary dictionary) {
+        this.dictionary = dictionary;
+        this.columns = new Column[dictionary.getLanguages().length];
+    }
+
+    /**
+     * Return the indexed dictionary.
+     * @return the dictionary
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Pick wrong answers looking like the word of an entry.
+     * Words with the same length, the same beginning and the most letters in common are preferred.
+     * @param line the line of the entry whose word is the correct answer
+     * @param column the column of the answer (See {@link Dictionary#getColumn(String)})
+     * @param count the number of distractors
+     * @param random the random generator
+     * @return the distractors (Fewer than {@code count} if the dictionary is too small)
+     */
+    public String[] pick(int line, int column, int count, Random random) {
+        if (dictionary.isSharded()) return pickNearby(line, column, count);
+        Column index = getColumn(column);
+        if (index.words.length == 0) return new String[0];
+        String answer = index.words[line];
+        Map<Integer, Integer> scores = new HashMap<Integer, Integer>();
+
+        int[] sameLength = index.byLength.get(answer.length());
+        if (sameLength != null) visit(sameLength, 2, scores, random);
+        for (int i = 0; i + 1 < answer.length(); i++) {
+            int[] postings = index.byBigram.get(bigram(answer, i));
+            if (postings != null) visit(postings, 1, scores, random);
+        }
+        for (int i = 0; i < SAMPLE; i++) scores.putIfAbsent(random.nextInt(index.words.length), 0);
+
+        List<Integer> candidates = new ArrayList<Integer>(scores.keySet());
+        for (int candidate : candidates) {
+            scores.merge(candidate, commonPrefix(answer, index.words[candidate]), Integer::sum);
+        }
+        candidates.sort((a, b) -> scores.get(b) - scores.get(a));
+        return choose(answer, candidates, column, count);
+    }
+
+    /**
+     * Pick wrong answers among the {@value #SAMPLE} lines before and after the entry, which are usually
+     * in the shard of the entry (already loaded), scored like the entries of the index.
+     */
+    private String[] pickNearby(int line, int column, int count) {
+        String answer = dictionary.getKey(line, column);
+        int from = Math.max(0, Math.min(line - SAMPLE, dictionary.size() - 2 * SAMPLE - 1));
+        int to = Math.min(dictionary.size(), from + 2 * SAMPLE + 1);
+        Map<Integer, Integer> scores = new HashMap<Integer, Integer>();
+        for (int candidate = from; candidate < to; candidate++) {
+            if (candidate != line) scores.put(candidate, similarity(answer, dictionary.getKey(candidate, column)));
+        }
+        List<Integer> candidates = new ArrayList<Integer>(scores.keySet());
+        candidates.sort((a, b) -> scores.get(b) - scores.get(a));
+        return choose(answer, candidates, column, count);
+    }
+
+    /**
+     * Keep the first candidates that aren't empty, nor equivalent to the answer or to a chosen candidate.
+     */
+    private String[] choose(String answer, List<Integer> candidates, int column, int count) {
+        List<String> distractors = new ArrayList<String>(count);
+        List<String> keys = new ArrayList<String>(count);
+        for (int candidate : candidates) {
+            if (distractors.size() == count) break;
+            String key = dictionary.getKey(candidate, column);
+            if (key.isEmpty() || key.equals(answer) || keys.contains(key)) continue;
+            keys.add(key);
+            distractors.add(dictionary.getWord(candidate, column));
+        }
+        return distractors.toArray(new String[0]);
+    }
+
+    private synchronized Column getColumn(int column) {
+        if (columns[column] == null) columns[column] = new Column(dictionary, column);
+        return columns[column];
+    }
+
+    /**
+     * Add a score to a random window of at most {@value #SAMPLE} entries of the specified postings.
+     */
+    private static void visit(int[] postings, int score, Map<Integer, Integer> scores, Random random) {
+        int offset = random.nextInt(postings.length);
+        for (int i = 0; i < Math.min(SAMPLE, postings.length); i++) {
+            scores.merge(postings[(offset + i) % postings.length], score, Integer::sum);
+        }
+    }
+
+    /**
+     * The score an index gives to a word : 2 for the same length, 1 per bigram of the answer it contains, plus the common beginning.
+     */
+    private static int similarity(String answer, String word) {
+        int score = answer.length() == word.length() ? 2 : 0;
+        for (int i = 0; i + 1 < answer.length(); i++) {
+            if (word.contains(answer.substring(i, i + 2))) score++;
+        }
+        return score + commonPrefix(answer, word);
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(3, Math.min(a.length(), b.length()));
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) i++;
+        return i;
+    }
+
+    private static int bigram(String word, int i) {
+        return word.charAt(i) << 16 | word.charAt(i + 1);
+    }
+
+    /**
+     * The groups of the entries of one column.
+     */
+    private static class Column {
+
+        private final String[] words;
+        private final Map<Integer, int[]> byLength;
+        private final Map<Integer, int[]> byBigram;
+
+        private Column(Dictionary dictionary, int column) {
+            this.words = new String[dictionary.size()];
+            Map<Integer, Postings> lengths = new HashMap<Integer, Postings>();
+            Map<Integer, Postings> bigrams = new HashMap<Integer, Postings>();
+            for (int line = 0; line < words.length; line++) {
+                String word = words[line] = dictionary.getKey(line, column);
+                lengths.computeIfAbsent(word.length(), key -> new Postings()).add(line);
+                for (int i = 0; i + 1 < word.length(); i++) {
+                    Postings postings = bigrams.computeIfAbsent(bigram(word, i), key -> new Postings());
+                    /* A word containing the same bigram twice is only listed once */
+                    if (postings.last() != line) postings.add(line);
+                }
+            }
+            this.byLength = freeze(lengths);
+            this.byBigram = freeze(bigrams);
+        }
+
+        private static Map<Integer, int[]> freeze(Map<Integer, Postings> groups) {
+            Map<Integer, int[]> frozen = new HashMap<Integer, int[]>(groups.size() * 2);
+            for (Map.Entry<Integer, Postings> group : groups.entrySet()) {
+                frozen.put(group.getKey(), group.getValue().toArray());
+            }
+            return frozen;
+        }
+    }
+
+    /**
+     * A growable list of lines.
+     */
+    private static class Postings {
+
+        private int[] lines = new int[4];
+        private int size = 0;
+
+        private void add(int line) {
+            if (size == lines.length) lines = Arrays.copyOf(lines, size * 2);
+            lines[size++] = line;
+        }
+
+        private int last() {
+            return size == 0 ? -1 : lines[size - 1];
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(lines, size);
+        }
+    }
+}
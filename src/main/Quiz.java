@@ -0,0 +1,355 @@
+package main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import io.Dictionary;
+import io.FlightEvents;
+import io.LearningStatistics;
+import io.Metrics;
+import io.ResultExporter;
+import io.SessionLog;
+import io.TextFolder;
+
+/**
+ * The rules of a quiz session, without any window : draw a word, check the answer.
+ * The game ({@link App}) and the simulator ({@link Simulator}) both use it.
+ *
+ * Everything random is drawn from a generator created with the seed of the session :
+ * with the same seed, the same dictionary and the same answers, a session asks the
+ * same questions again (See {@link SessionLog}).
+ * @author Erwin Redoté
+ */
+public class Quiz {
+
+    public static final int MAX_WORDS = 10;
+    /** The time allowed to answer a question (in the timed mode, and to score the difficulty of a word) */
+    public static final int TIME_LIMIT_MS = 15000;
+    private static final int DISTRACTORS = 4;
+    private static final Metrics.Timer GENERATE = Metrics.timer("app.generateWord");
+    private static final Metrics.Timer CHECK = Metrics.timer("app.checkWord");
+    private final Supplier<Dictionary> dictionaries;
+    private final String[] languages;
+    private final long seed;
+    private final Random random;
+    private final boolean choices;
+    private final TextFolder folder = new TextFolder();
+    private final ResponseTimes responseTimes;
+    private final LearningStatistics statistics;
+    private final AdaptiveScheduler scheduler;
+    private SessionLog log;
+    private ClassStatistics classStatistics;
+    private ResultExporter exporter;
+    private String learner;
+    private DistractorIndex distractors;
+    private Dictionary dictionary;
+    private String[] currentWord;
+    private String currentKey, currentChoices;
+    private int currentEntry = -1, currentColumn = 1;
+    private boolean reverse;
+    private int points = 0, questionNumber = 1;
+    private long sessionMs = 0;
+
+    /**
+     * Create a session
+     * @param dictionaries Gives the current version of the dictionary (e.g : {@link io.DictionaryWatcher#getDictionary()})
+     * @param languages The two languages of the quiz (e.g : "ANGLAIS", "ESPAGNOL"), or null for the first two columns
+     * @param seed The seed of the random generator
+     * @param choices true to prepare a list of possible answers for each question (See {@link #getChoices()})
+     * @param statistics The statistics of the learner, or null to not save them
+     * @param adaptiveLimitMs The time allowed to answer, to choose the words from the statistics
+     * (See {@link AdaptiveScheduler}), or 0 to choose them randomly
+     */
+    public Quiz(Supplier<Dictionary> dictionaries, String[] languages, long seed, boolean choices, LearningStatistics statistics, long adaptiveLimitMs) {
+        this.dictionaries = dictionaries;
+        this.languages = languages;
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.choices = choices;
+        this.statistics = statistics;
+        this.dictionary = dictionaries.get();
+        /* A session only asks a few words : the distributions grow with the words asked, not with the dictionary */
+        this.responseTimes = new ResponseTimes(MAX_WORDS);
+        if(statistics != null) statistics.bind(dictionary);
+        this.scheduler = statistics != null && adaptiveLimitMs > 0 ? new AdaptiveScheduler(dictionary, statistics, adaptiveLimitMs) : null;
+    }
+
+    /**
+     * Record the questions and the answers of the session
+     * @param log The log, or null to stop recording
+     */
+    public void setLog(SessionLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Add the answers and the score of the sessions to the statistics of a class
+     * @param classStatistics The statistics of the class, or null
+     * @param learner The name of the learner in the best scores and the exported results
+     */
+    public void setClassStatistics(ClassStatistics classStatistics, String learner) {
+        this.classStatistics = classStatistics;
+        this.learner = learner;
+    }
+
+    /**
+     * Export the result of each finished session
+     * @param exporter The exporter, or null
+     */
+    public void setExporter(ResultExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Start a new session with the same learner (The statistics are kept)
+     */
+    public void restart() {
+        this.points = 0;
+        this.questionNumber = 1;
+        this.sessionMs = 0;
+    }
+
+    /**
+     * Generate randomly a word contained in the current dictionary
+     * (The last version of the file, the question then keeps using this version).
+     * Once the session is over, no word is drawn anymore
+     * @return The randomly generated word (See {@link #getCurrentWord()})
+     */
+    public String[] generateWord() {
+        if(isOver()) return currentWord;
+        long start = Metrics.start();
+        Dictionary previous = dictionary;
+        dictionary = dictionaries.get();
+        if(dictionary != previous) {
+            if(statistics != null) statistics.bind(dictionary);
+            if(scheduler != null) scheduler.sync(dictionary);
+        }
+        currentEntry = scheduler != null ? scheduler.next(dictionary, random) : -1;
+        if(currentEntry < 0) currentEntry = pickEntry();
+        int first = getLanguageColumn(0), second = getLanguageColumn(1);
+        String[] words = { dictionary.getWord(currentEntry, first), dictionary.getWord(currentEntry, second) };
+        String[] lang = dictionary.getLanguages();
+        reverse = randomize(0, 2) == 1;
+        currentColumn = reverse ? first : second;
+        currentWord = reverse ? combine(swap(words), lang[first]) : combine(words, lang[second]);
+        currentKey = dictionary.getKey(currentEntry, currentColumn);
+        currentChoices = choices ? pickChoices() : null;
+        GENERATE.record(start);
+
+        FlightEvents.QuestionDrawn event = new FlightEvents.QuestionDrawn();
+        if(event.shouldCommit()) {
+            event.entry = currentEntry;
+            event.direction = currentWord[2];
+            event.word = currentWord[0];
+            event.commit();
+        }
+        if(log != null) {
+            try {
+                log.question(dictionary.getId(currentEntry), reverse);
+            } catch(IOException e) {
+                stopLogging(e);
+            }
+        }
+        return currentWord;
+    }
+
+    /**
+     * Check if the word is correct or not, and record the answer
+     * @param word The answer of the user
+     * @param elapsedNanos The time the user took to answer
+     * @param timedOut true if the time allowed to answer is over (The answer is then incorrect)
+     * @return true if the answer is correct (false, and nothing is recorded, if the session is over)
+     */
+    public boolean checkWord(String word, long elapsedNanos, boolean timedOut) {
+        if(isOver()) return false;
+        long start = Metrics.start();
+        boolean hasNoError = !timedOut && folder.matches(word, currentKey);
+        if(hasNoError) this.points++;
+        this.questionNumber++;
+        int id = dictionary.getId(currentEntry);
+        responseTimes.record(id, elapsedNanos, hasNoError);
+        if(statistics != null) statistics.record(id, hasNoError, elapsedNanos / 1_000_000);
+        if(scheduler != null) scheduler.update(id);
+        sessionMs += elapsedNanos / 1_000_000;
+        if(classStatistics != null) classStatistics.recordAnswer(id, dictionary.getEntryHash(currentEntry), hasNoError);
+        if(isOver()) {
+            if(classStatistics != null) classStatistics.recordSession(learner, points, MAX_WORDS, sessionMs);
+            if(exporter != null) {
+                String[] lang = dictionary.getLanguages();
+                exporter.submit(new ResultExporter.Result(learner, System.currentTimeMillis(), seed, points, MAX_WORDS, sessionMs,
+                    lang[getLanguageColumn(0)] + "," + lang[getLanguageColumn(1)]));
+            }
+        }
+
+        FlightEvents.AnswerChecked event = new FlightEvents.AnswerChecked();
+        if(event.shouldCommit()) {
+            event.entry = currentEntry;
+            event.direction = currentWord[2];
+            event.correct = hasNoError;
+            event.timedOut = timedOut;
+            event.latency = elapsedNanos;
+            event.commit();
+        }
+        if(log != null) {
+            try {
+                log.answer(word, hasNoError, timedOut, elapsedNanos / 1_000_000);
+            } catch(IOException e) {
+                stopLogging(e);
+            }
+        }
+        CHECK.record(start);
+        return hasNoError;
+    }
+
+    /**
+     * Return the current word
+     * @return An array containing 3 elements '0' the word to translate '1' the translation and '2'
+     * the language in wich the user will translate the word.
+     */
+    public String[] getCurrentWord() {
+        return currentWord;
+    }
+
+    /**
+     * Return the identifier of the current entry (See {@link Dictionary#getId(int)})
+     * @return The identifier
+     */
+    public int getCurrentId() {
+        return dictionary.getId(currentEntry);
+    }
+
+    /**
+     * Return true if the user has to translate the second language of the quiz into the first one
+     * @return true if the current question is reversed
+     */
+    public boolean isReversed() {
+        return reverse;
+    }
+
+    /**
+     * Return the translation of the current word mixed with wrong answers looking like it
+     * @return The possible answers, separated by a line break (null if the quiz has no choices)
+     */
+    public String getChoices() {
+        return currentChoices;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    /**
+     * Return the number of the current question
+     * @return The number, starting from 1
+     */
+    public int getQuestionNumber() {
+        return questionNumber;
+    }
+
+    /**
+     * Return true once {@value #MAX_WORDS} questions have been answered
+     * @return true if the session is over
+     */
+    public boolean isOver() {
+        return questionNumber > MAX_WORDS;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Return the version of the dictionary used by the current question
+     * @return The dictionary
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    public ResponseTimes getResponseTimes() {
+        return responseTimes;
+    }
+
+    /**
+     * Return the column of one of the two languages of the quiz in the current dictionary
+     * (The ones chosen with "--languages=", checked when the game starts, or the first two columns of the
+     * dictionary, also used if a new version of the dictionary doesn't have a chosen language anymore)
+     * @param i 0 for the first language, 1 for the second one
+     * @return The column
+     */
+    private int getLanguageColumn(int i) {
+        int column = languages != null && i < languages.length ? dictionary.getColumn(languages[i].trim()) : -1;
+        return column >= 0 ? column : Math.min(i, dictionary.getLanguages().length - 1);
+    }
+
+    /**
+     * Draw two entries randomly and keep one of them, the hardest one being more likely to be kept
+     * (See {@link ResponseTimes#getDifficulty(int, long)}) : the words the user misses or answers
+     * slowly come back more often during the session
+     * @return The line of the entry
+     */
+    private int pickEntry() {
+        int first = randomize(0, dictionary.size() - 1), second = randomize(0, dictionary.size() - 1);
+        double firstDifficulty = responseTimes.getDifficulty(dictionary.getId(first), TIME_LIMIT_MS);
+        double secondDifficulty = responseTimes.getDifficulty(dictionary.getId(second), TIME_LIMIT_MS);
+        return random.nextDouble() * (firstDifficulty + secondDifficulty) < firstDifficulty ? first : second;
+    }
+
+    /**
+     * Mix the translation of the current word with wrong answers looking like it
+     * @return The possible answers, separated by a line break
+     */
+    private String pickChoices() {
+        if(distractors == null || distractors.getDictionary() != dictionary) distractors = new DistractorIndex(dictionary);
+        List<String> answers = new ArrayList<>(Arrays.asList(distractors.pick(currentEntry, currentColumn, DISTRACTORS, random)));
+        answers.add(currentWord[1]);
+        Collections.shuffle(answers, random);
+        return String.join("\n", answers);
+    }
+
+    private void stopLogging(IOException e) {
+        System.err.println("Unable to write the session log, the session won't be recorded anymore.");
+        e.printStackTrace();
+        log = null;
+    }
+
+    /**
+     * Swap the two arguments of the array
+     * @param words The array to swap
+     * @return The swaped array
+     */
+    private String[] swap(String[] words) {
+        String tmp = words[0];
+        words[0] = words[1];
+        words[1] = tmp;
+        return words;
+    }
+
+    /**
+     * Generate a random number between min and max
+     * @param min The minimum number
+     * @param max The maximum number
+     * @return The randomly generated number
+     */
+    private int randomize(int min, int max) {
+        return (int) (random.nextDouble() * (max - min)) + min;
+    }
+
+    /**
+     *
+     * @param a The array of words
+     * @param lang The language the user will translate to
+     * @return An array containing 3 elements '0' the word to translate '1' the translation (For results checking) and '2'
+     * the language in wich the user will translate the word.
+     */
+    private String[] combine(String[] a, String lang) {
+        String[] copy = Arrays.copyOf(a, 3);
+        copy[2] = lang;
+        return copy;
+    }
+}
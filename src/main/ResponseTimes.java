@@ -0,0 +1,195 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * This class stores, for every entry of a dictionary, the distribution of the
+ * response times of the user. The entries are identified by their
+ * {@link io.Dictionary#getId(int) identifier}, so the statistics follow the
+ * words when the dictionary is reloaded.
+ *
+ * Each distribution is an histogram with exponential buckets (the first bucket
+ * holds the answers given in less than {@value #FIRST_BUCKET_MS} ms, and each
+ * following bucket is twice as large as the previous one). Only the entries
+ * answered have a distribution : each one gets the next slot of flat primitive
+ * arrays, found from its identifier through an open addressing table. There
+ * is no object per answer nor per entry, and nothing for the entries never asked.
+ * @author Erwin Redoté
+ */
+public class ResponseTimes {
+
+    public static final int BUCKETS = 12;
+    private static final int FIRST_BUCKET_MS = 128;
+    /* The histograms of all the slots must fit in one array */
+    private static final int MAX_SLOTS = Integer.MAX_VALUE / BUCKETS / 2;
+
+    /* The slot + 1 of each identifier (0 : empty), twice as large as the slots */
+    private int[] table;
+    private int[] ids;
+    private int[] histograms;
+    private int[] attempts;
+    private int[] errors;
+    private long[] totalMs;
+    private int slots = 0;
+
+    /**
+     * Create empty distributions (They grow with the entries answered).
+     * @param entries the number of entries expected to be answered (e.g : the number of questions of a session)
+     */
+    public ResponseTimes(int entries) {
+        int capacity = Math.min(Math.max(entries, 1), MAX_SLOTS);
+        this.table = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+        this.ids = new int[capacity];
+        this.histograms = new int[capacity * BUCKETS];
+        this.attempts = new int[capacity];
+        this.errors = new int[capacity];
+        this.totalMs = new long[capacity];
+    }
+
+    /**
+     * Record an answer for the specified entry.
+     * @param entry the entry that was asked
+     * @param elapsedNanos the time the user took to answer (From {@link System#nanoTime()})
+     * @param correct true if the answer was correct
+     */
+    public void record(int entry, long elapsedNanos, boolean correct) {
+        if (entry < 0) return;
+        int slot = slotOf(entry);
+        if (slot < 0) slot = add(entry);
+        long ms = Math.max(0, elapsedNanos / 1_000_000);
+        this.histograms[slot * BUCKETS + bucket(ms)]++;
+        this.attempts[slot]++;
+        this.totalMs[slot] += ms;
+        if (!correct) this.errors[slot]++;
+    }
+
+    /**
+     * Return the number of answers recorded for the specified entry.
+     * @param entry the entry
+     * @return the number of answers
+     */
+    public int getAttempts(int entry) {
+        int slot = slotOf(entry);
+        return slot >= 0 ? this.attempts[slot] : 0;
+    }
+
+    /**
+     * Return the mean response time of the specified entry.
+     * @param entry the entry
+     * @return the mean response time in milliseconds, or 0 if the entry was never asked
+     */
+    public long getMeanMs(int entry) {
+        int slot = slotOf(entry);
+        return slot >= 0 ? meanMs(slot) : 0;
+    }
+
+    /**
+     * Return an approximation of the specified quantile of the response times of an entry.
+     * @param entry the entry
+     * @param quantile the quantile (Between 0 and 1, e.g : 0.5 for the median)
+     * @return the upper bound (in milliseconds) of the bucket containing the quantile, or 0 if the entry was never asked
+     */
+    public long getQuantileMs(int entry, double quantile) {
+        int slot = slotOf(entry);
+        return slot >= 0 ? quantileMs(slot, quantile) : 0;
+    }
+
+    /**
+     * Return a difficulty score for the specified entry, computed from the error rate
+     * and the median response time compared to the allowed time.
+     * @param entry the entry
+     * @param limitMs the time allowed to answer a question
+     * @return a score between 0 (easy) and 1 (hard), or 0.5 if the entry was never asked
+     */
+    public double getDifficulty(int entry, long limitMs) {
+        int slot = slotOf(entry);
+        if (slot < 0) return 0.5;
+        double errorRate = (double) this.errors[slot] / this.attempts[slot];
+        double slowness = Math.min(1.0, (double) quantileMs(slot, 0.5) / Math.max(limitMs, 1));
+        return 0.7 * errorRate + 0.3 * slowness;
+    }
+
+    /**
+     * Return the entry that slows the user down the most (Highest mean response time).
+     * @return the slowest entry, or -1 if nothing was recorded
+     */
+    public int getSlowestEntry() {
+        int slowest = -1;
+        long slowestMean = -1;
+        for (int slot = 0; slot < this.slots; slot++) {
+            long mean = meanMs(slot);
+            if (mean > slowestMean) {
+                slowest = this.ids[slot];
+                slowestMean = mean;
+            }
+        }
+        return slowest;
+    }
+
+    private long meanMs(int slot) {
+        return this.totalMs[slot] / this.attempts[slot];
+    }
+
+    private long quantileMs(int slot, double quantile) {
+        long rank = (long) Math.ceil(Math.min(Math.max(quantile, 0), 1) * this.attempts[slot]);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.histograms[slot * BUCKETS + i];
+            if (seen >= Math.max(rank, 1)) return upperBoundMs(i);
+        }
+        return upperBoundMs(BUCKETS - 1);
+    }
+
+    /**
+     * Return the slot of an entry, or -1 if it was never answered.
+     */
+    private int slotOf(int entry) {
+        int mask = this.table.length - 1;
+        for (int i = hash(entry) & mask; this.table[i] != 0; i = (i + 1) & mask) {
+            if (this.ids[this.table[i] - 1] == entry) return this.table[i] - 1;
+        }
+        return -1;
+    }
+
+    private int add(int entry) {
+        if (this.slots == this.ids.length) grow();
+        int slot = this.slots++;
+        this.ids[slot] = entry;
+        index(slot);
+        return slot;
+    }
+
+    private void index(int slot) {
+        int mask = this.table.length - 1;
+        int i = hash(this.ids[slot]) & mask;
+        while (this.table[i] != 0) i = (i + 1) & mask;
+        this.table[i] = slot + 1;
+    }
+
+    private void grow() {
+        if (this.ids.length == MAX_SLOTS) throw new IllegalStateException("Too many entries : " + this.slots);
+        int capacity = (int) Math.min(MAX_SLOTS, this.ids.length * 2L);
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.histograms = Arrays.copyOf(this.histograms, capacity * BUCKETS);
+        this.attempts = Arrays.copyOf(this.attempts, capacity);
+        this.errors = Arrays.copyOf(this.errors, capacity);
+        this.totalMs = Arrays.copyOf(this.totalMs, capacity);
+        if (capacity * 2 > this.table.length) {
+            this.table = new int[this.table.length * 2];
+            for (int slot = 0; slot < this.slots; slot++) index(slot);
+        }
+    }
+
+    private static int hash(int entry) {
+        /* Spread the consecutive identifiers (Fibonacci hashing) */
+        return (entry * 0x9E3779B9) >>> 16;
+    }
+
+    private static int bucket(long ms) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(ms / FIRST_BUCKET_MS));
+    }
+
+    private static long upperBoundMs(int bucket) {
+        return (long) FIRST_BUCKET_MS << bucket;
+    }
+}
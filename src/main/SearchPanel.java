@@ -0,0 +1,69 @@
+package main;
+
+import io.ActionFenetre;
+import io.AlignementTexte;
+import io.Auditeur;
+import io.Dictionary;
+import io.DictionaryWatcher;
+import io.Fenetre;
+
+/**
+ * A window to find the entries of the dictionary containing a fragment of text,
+ * in English or in French. Without text, the whole dictionary is shown (Only the
+ * visible lines are read, see {@link Fenetre#ajouterListe}).
+ * @author Erwin Redoté
+ */
+public class SearchPanel implements Auditeur {
+
+    private static final int WIDTH = 500, HEIGHT = 240;
+    private static final int MAX_RESULTS = 200;
+    private static final String PROTOTYPE = "a rather long word, un mot assez long";
+    private DictionaryWatcher dictionaries;
+
+    public SearchPanel(DictionaryWatcher dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Create and show the search window
+     */
+    public void show() {
+        Fenetre window = new Fenetre("Rechercher", WIDTH, HEIGHT, 1, 4);
+        window.setRedimensionnable(true);
+        window.setAuditeur(this);
+        window.ajouterZoneSaisie("query", "", 0, 0);
+        window.ajouterBouton("search", "Rechercher", 1, 0);
+        window.ajouterEtiquette("info", "", AlignementTexte.CENTRE, 2, 0);
+        Dictionary dictionary = dictionaries.getDictionary();
+        window.ajouterListe("results", dictionary.size(), dictionary::getWord, PROTOTYPE, 3, 0);
+        window.afficher();
+    }
+
+    @Override
+    public void executerAction(Fenetre instance, String elementName, ActionFenetre action, String value) {
+        boolean enter = action == ActionFenetre.PRESSION_TOUCHE && value.equalsIgnoreCase("enter");
+        if(enter || "search".equals(elementName)) search(instance, instance.getValeur("query"));
+    }
+
+    /**
+     * Show the entries containing the specified fragment
+     * @param instance The window
+     * @param fragment The text to find
+     */
+    private void search(Fenetre instance, String fragment) {
+        Dictionary dictionary = dictionaries.getDictionary();
+        if(fragment.isEmpty()) {
+            instance.setContenuListe("results", dictionary.size(), dictionary::getWord);
+            instance.setValeur("info", dictionary.size() + " mot(s)");
+            return;
+        }
+        long start = System.nanoTime();
+        int[] lines = dictionary.search(fragment, MAX_RESULTS);
+        long elapsedUs = (System.nanoTime() - start) / 1000;
+
+        instance.setContenuListe("results", lines.length, i -> dictionary.getWord(lines[i]));
+        long indexBytes = dictionary.getSearchIndex() != null ? dictionary.getSearchIndex().getMemoryBytes() : 0;
+        instance.setValeur("info", String.format("%d résultat(s) en %.2f ms (index : %d Ko)",
+            lines.length, elapsedUs / 1000.0, indexBytes / 1024));
+    }
+}
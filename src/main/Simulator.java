@@ -0,0 +1,186 @@
+package main;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.Dictionary;
+import io.LearningStatistics;
+import io.SessionLog;
+
+/**
+ * Play quiz sessions without any window, with the same rules as the game (See {@link Quiz}) :
+ * <ul>
+ * <li>{@code --replay=data/sessions/session-1.log} replays a recorded session and checks that the
+ * same questions are asked</li>
+ * <li>otherwise, simulated learners play {@code --sessions=} sessions each, on all the cores, and the
+ * learning curve (correct answers by session), the statistics of the class (See {@link ClassStatistics})
+ * and the throughput are shown</li>
+ * </ul>
+ * A simulated learner knows a word with a chance that grows each time it's asked.
+ * @author Erwin Redoté
+ */
+public class Simulator {
+
+    private static final String DICTIONARY_FILE = "data/vocabulaire.txt";
+    private static final double PRIOR = 0.3, LEARNING_RATE = 0.4;
+
+    private final Dictionary dictionary;
+    private final String[] languages;
+    private final boolean adaptive;
+    private final LongAdder[] correct, answered;
+    private final LongAdder latencyMs = new LongAdder();
+    private final ClassStatistics classStatistics = new ClassStatistics(5);
+
+    /**
+     * Prepare a simulation
+     * @param dictionary The dictionary shared by every learner (It's only read)
+     * @param languages The two languages of the quiz, or null for the first two columns
+     * @param sessions The number of sessions of each learner
+     * @param adaptive true to choose the words with an {@link AdaptiveScheduler}
+     */
+    public Simulator(Dictionary dictionary, String[] languages, int sessions, boolean adaptive) {
+        this.dictionary = dictionary;
+        this.languages = languages;
+        this.adaptive = adaptive;
+        this.correct = new LongAdder[sessions];
+        this.answered = new LongAdder[sessions];
+        for(int i = 0; i < sessions; i++) {
+            correct[i] = new LongAdder();
+            answered[i] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String file = DICTIONARY_FILE, replay = null;
+        String[] languages = null;
+        int learners = 1000, sessions = 20, threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        for(String option : args) {
+            if(option.startsWith("--file=")) file = option.substring("--file=".length());
+            if(option.startsWith("--replay=")) replay = option.substring("--replay=".length());
+            if(option.startsWith("--languages=")) languages = option.substring("--languages=".length()).split(",");
+            if(option.startsWith("--learners=")) learners = Integer.parseInt(option.substring("--learners=".length()));
+            if(option.startsWith("--sessions=")) sessions = Integer.parseInt(option.substring("--sessions=".length()));
+            if(option.startsWith("--threads=")) threads = Integer.parseInt(option.substring("--threads=".length()));
+            if(option.startsWith("--seed=")) seed = Long.parseLong(option.substring("--seed=".length()));
+        }
+        Dictionary dictionary = new Dictionary(file);
+        if(replay != null) {
+            replay(dictionary, SessionLog.read(replay));
+            return;
+        }
+        Simulator simulator = new Simulator(dictionary, languages, sessions, Arrays.asList(args).contains("--adaptive"));
+        long start = System.nanoTime();
+        long questions = simulator.run(learners, threads, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        simulator.report(System.out);
+        System.out.printf("%d learners, %d questions in %.2f s (%d threads) : %.0f questions/s%n",
+            learners, questions, seconds, threads, questions / seconds);
+    }
+
+    /**
+     * Simulate the learners, in parallel
+     * @param learners The number of learners
+     * @param threads The number of threads
+     * @param seed The seed of the first learner (The next learners have the next seeds)
+     * @return The number of questions asked
+     */
+    public long run(int learners, int threads, long seed) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                for(int learner = next.getAndIncrement(); learner < learners; learner = next.getAndIncrement()) simulate(seed + learner);
+            }));
+        }
+        for(Future<?> worker : workers) worker.get();
+        executor.shutdown();
+        long questions = 0;
+        for(LongAdder count : answered) questions += count.sum();
+        return questions;
+    }
+
+    /**
+     * Play every session of a learner
+     * @param seed The seed of the learner (Its quiz and its answers)
+     */
+    private void simulate(long seed) {
+        LearningStatistics statistics = adaptive ? new LearningStatistics(dictionary.size()) : null;
+        Quiz quiz = new Quiz(() -> dictionary, languages, seed, false, statistics, adaptive ? Quiz.TIME_LIMIT_MS : 0);
+        quiz.setClassStatistics(classStatistics, "#" + seed);
+        Random learner = new Random(~seed);
+        double skill = 0.5 + learner.nextDouble();
+        int[] practice = new int[dictionary.size()];
+        for(int session = 0; session < correct.length; session++) {
+            quiz.restart();
+            while(!quiz.isOver()) {
+                String[] word = quiz.generateWord();
+                int id = quiz.getCurrentId();
+                double known = 1 - (1 - PRIOR) * Math.exp(-skill * LEARNING_RATE * practice[id]++);
+                boolean knows = learner.nextDouble() < known;
+                long ms = (long) ((knows ? 2000 : 6000) * (0.5 + learner.nextDouble()));
+                if(quiz.checkWord(knows ? word[1] : "?", ms * 1_000_000, false)) correct[session].increment();
+                answered[session].increment();
+                latencyMs.add(ms);
+            }
+        }
+    }
+
+    /**
+     * Show the learning curve
+     * @param out Where to write it
+     */
+    public void report(PrintStream out) {
+        out.println("Session  Correct answers");
+        for(int i = 0; i < correct.length; i++) {
+            long count = answered[i].sum();
+            out.printf("%7d  %5.1f %%%n", i + 1, count == 0 ? 0 : 100.0 * correct[i].sum() / count);
+        }
+        long total = 0;
+        for(LongAdder count : answered) total += count.sum();
+        out.printf("Mean response time : %.2f s%n", total == 0 ? 0 : latencyMs.sum() / 1000.0 / total);
+        out.printf("%d sessions, mean score %.1f %%, best scores : %s%n", classStatistics.getSessions(),
+            classStatistics.getMeanScore(), classStatistics.getTopScores());
+        out.print("Hardest words :");
+        for(ClassStatistics.WordCounters word : classStatistics.getHardestWords(5)) {
+            out.printf(" %s (%.0f %%)", dictionary.getWords(dictionary.getLine(word.id))[0], 100 * word.getErrorRate());
+        }
+        out.println();
+    }
+
+    /**
+     * Play a recorded session again with its seed and its answers, and check that the same questions are asked
+     * @param dictionary The dictionary
+     * @param session The recorded session
+     */
+    private static void replay(Dictionary dictionary, SessionLog.Session session) throws IOException {
+        if(session.dictionaryHash != dictionary.getVersionHash()) System.out.println("The dictionary changed since the session was recorded.");
+        if((session.options & SessionLog.ADAPTIVE) != 0) System.out.println("Adaptive session : replayed without the statistics the learner had then.");
+        boolean adaptive = (session.options & SessionLog.ADAPTIVE) != 0;
+        LearningStatistics statistics = adaptive ? new LearningStatistics(dictionary.size()) : null;
+        Quiz quiz = new Quiz(() -> dictionary, session.languages, session.seed, (session.options & SessionLog.CHOICES) != 0,
+            statistics, adaptive ? Quiz.TIME_LIMIT_MS : 0);
+        int same = 0, answers = 0;
+        for(SessionLog.Question question : session.questions) {
+            String[] word = quiz.generateWord();
+            boolean identical = quiz.getCurrentId() == question.id && quiz.isReversed() == question.reverse;
+            if(identical) same++;
+            System.out.printf("%6.1f s  %-30s %-20s %s%n", question.timeMs / 1000.0, word[0],
+                question.answer != null ? question.answer : "-", identical ? "" : "(different question)");
+            if(question.answer == null) break;
+            answers++;
+            quiz.checkWord(question.answer, question.latencyMs * 1_000_000, question.timedOut);
+        }
+        System.out.printf("%d/%d identical questions, %d/%d correct answers%n", same, session.questions.size(), quiz.getPoints(), answers);
+    }
+}
@@ -0,0 +1,128 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Load randomly damaged vocabulary files (byte order mark, blank lines, separators without
+ * or with extra spaces, lines without separator, Windows ends of line) in every mode, and
+ * check that each mode finds exactly the entries that were written.
+ * @author Erwin Redoté
+ */
+class DictionaryFuzzTest {
+
+	private static final int FILES = 300;
+	private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzéèàçôœ'-";
+	private static final String[] SEPARATORS = { ", ", ",", " , ", "  ,\t", ",  " };
+	private static final String[] NAMES = { "ANGLAIS", "FRANCAIS", "ESPAGNOL", "ALLEMAND" };
+
+	@TempDir
+	Path directory;
+	private String userDir;
+
+	@BeforeEach
+	void useDirectory() {
+		userDir = System.getProperty("user.dir");
+		System.setProperty("user.dir", directory.toString());
+	}
+
+	@AfterEach
+	void restoreDirectory() {
+		System.setProperty("user.dir", userDir);
+	}
+
+	@Test
+	void everyModeLoadsTheWrittenEntries() throws IOException {
+		Random random = new Random(50);
+		for (int file = 0; file < FILES; file++) {
+			int languages = 2 + random.nextInt(3);
+			boolean header = random.nextBoolean();
+			List<String[]> entries = new ArrayList<String[]>();
+			StringBuilder text = new StringBuilder();
+			if (random.nextInt(3) == 0) text.append('\uFEFF');
+			if (header) {
+				text.append(random.nextBoolean() ? "# " : "#");
+				for (int j = 0; j < languages; j++) {
+					if (j > 0) text.append(separator(random));
+					text.append(random.nextBoolean() ? NAMES[j] : NAMES[j].toLowerCase());
+				}
+				text.append(end(random));
+			}
+			for (int line = random.nextInt(60); line > 0; line--) {
+				switch (random.nextInt(8)) {
+				case 0:
+					text.append(random.nextBoolean() ? "" : " \t ").append(end(random));
+					break;
+				case 1:
+					/* No separator : ignored */
+					text.append(word(random)).append(end(random));
+					break;
+				default:
+					String[] words = new String[header ? languages : 2];
+					for (int j = 0; j < words.length; j++) words[j] = word(random);
+					entries.add(words);
+					text.append(random.nextBoolean() ? "" : "  ");
+					for (int j = 0; j < words.length; j++) text.append(j > 0 ? separator(random) : "").append(words[j]);
+					text.append(random.nextBoolean() ? "" : " ").append(end(random));
+				}
+			}
+			Files.write(directory.resolve("fuzz.txt"), text.toString().getBytes(StandardCharsets.UTF_8));
+
+			String[] expectedLanguages = header ? Arrays.copyOf(NAMES, languages) : Dictionary.DEFAULT_LANGUAGES;
+			Dictionary inMemory = new Dictionary("fuzz.txt");
+			Dictionary[] dictionaries = {
+				inMemory,
+				new Dictionary("fuzz.txt", null, true),
+				new Dictionary("fuzz.txt", 1 + random.nextInt(7), random.nextInt(2000))
+			};
+			for (Dictionary dictionary : dictionaries) {
+				String mode = "file " + file + (dictionary.isSharded() ? " (sharded)" : dictionary.isCompressed() ? " (compressed)" : "");
+				assertArrayEquals(expectedLanguages, dictionary.getLanguages(), mode);
+				assertEquals(entries.size(), dictionary.size(), mode);
+				for (int line = 0; line < entries.size(); line++) {
+					String[] words = entries.get(line);
+					for (int j = 0; j < words.length; j++) assertEquals(words[j], dictionary.getWord(line, j), mode);
+					assertEquals(line, dictionary.getLine(dictionary.getId(line)), mode);
+					assertEquals(inMemory.getEntryHash(line), dictionary.getEntryHash(line), mode);
+				}
+				assertEquals(inMemory.getVersionHash(), dictionary.getVersionHash(), mode);
+			}
+		}
+	}
+
+	@Test
+	void headerSeparatorsAreOptional() {
+		assertArrayEquals(new String[] { "ANGLAIS", "FRANCAIS" }, Dictionary.parseHeader("# ANGLAIS,FRANCAIS"));
+		assertArrayEquals(new String[] { "ANGLAIS", "FRANCAIS", "ESPAGNOL" }, Dictionary.parseHeader("#anglais ,  francais,espagnol"));
+		assertArrayEquals(Dictionary.DEFAULT_LANGUAGES, Dictionary.parseHeader("#"));
+	}
+
+	private static String word(Random random) {
+		StringBuilder word = new StringBuilder();
+		for (int i = 1 + random.nextInt(8); i > 0; i--) word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+		if (random.nextInt(5) == 0) word.append(' ').append(LETTERS.charAt(random.nextInt(26)));
+		return word.toString();
+	}
+
+	private static String separator(Random random) {
+		return SEPARATORS[random.nextInt(SEPARATORS.length)];
+	}
+
+	private static String end(Random random) {
+		return random.nextInt(4) == 0 ? "\r\n" : "\n";
+	}
+}
@@ -0,0 +1,125 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The identifiers of the entries and the versions of a dictionary, in memory and sharded.
+ * @author Erwin Redoté
+ */
+class DictionaryTest {
+
+	@TempDir
+	Path directory;
+	private String userDir;
+
+	@BeforeEach
+	void useDirectory() {
+		userDir = System.getProperty("user.dir");
+		System.setProperty("user.dir", directory.toString());
+	}
+
+	@AfterEach
+	void restoreDirectory() {
+		System.setProperty("user.dir", userDir);
+	}
+
+	@Test
+	void reloadKeepsTheIdentifiers() throws IOException {
+		write("cat, chat\ndog, chien\nbird, oiseau\n");
+		Dictionary[] versions = { new Dictionary("words.txt"), new Dictionary("words.txt", 2, 1) };
+		write("ant, fourmi\ncat, chat\nbird, oiseau\n");
+		for (Dictionary previous : versions) {
+			Dictionary next = previous.reload("words.txt");
+			assertEquals(previous.getId(0), next.getId(1), "cat");
+			assertEquals(previous.getId(2), next.getId(2), "bird");
+			assertEquals(3, next.getId(0), "ant is new");
+			assertEquals(-1, next.getLine(previous.getId(1)), "dog is removed");
+		}
+	}
+
+	@Test
+	void shardedVersionKeepsItsLines() throws IOException {
+		write("cat, chat\ndog, chien\nbird, oiseau\nfish, poisson\n");
+		Dictionary dictionary = new Dictionary("words.txt", 1, 1);
+		assertEquals("chat", dictionary.getWord(0, 1));
+		write("");
+		/* Each shard is forgotten as soon as another one is read : they are all read again after the change */
+		assertEquals("poisson", dictionary.getWord(3, 1));
+		assertEquals("dog", dictionary.getWord(1, 0));
+		assertEquals("cat", dictionary.getWord(0, 0));
+	}
+
+	@Test
+	void shardsAreReadFromManyThreads() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 2000; i++) text.append("word").append(i).append(", mot").append(i).append('\n');
+		write(text.toString());
+		/* Shards of 10 lines and room for a few of them : the shards are loaded and forgotten all the time */
+		Dictionary dictionary = new Dictionary("words.txt", 10, 2000);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> readers = new ArrayList<Future<?>>();
+		for (int thread = 0; thread < 8; thread++) {
+			long seed = thread;
+			readers.add(executor.submit(() -> {
+				Random random = new Random(seed);
+				for (int i = 0; i < 20000; i++) {
+					int line = random.nextInt(2000);
+					assertEquals("mot" + line, dictionary.getWord(line, 1));
+					assertEquals(line, dictionary.getLine(dictionary.getId(line)));
+				}
+				return null;
+			}));
+		}
+		for (Future<?> reader : readers) reader.get();
+		executor.shutdown();
+		assertTrue(dictionary.getResidentBytes() <= 2000 + 2000, "" + dictionary.getResidentBytes());
+	}
+
+	@Test
+	void shardedReloadOnlyComparesTheChangedLines() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) text.append("word").append(i).append(", mot").append(i).append('\n');
+		write(text.toString());
+		Dictionary previous = new Dictionary("words.txt", 100, 1 << 20);
+		write(text.toString().replace("word500, mot500\n", "word500, mot500\nnew, nouveau\n"));
+		Dictionary next = previous.reload("words.txt");
+		for (int line = 0; line < 1000; line++) {
+			int nextLine = line <= 500 ? line : line + 1;
+			assertEquals(previous.getId(line), next.getId(nextLine), "line " + line);
+			assertEquals(previous.getEntryHash(line), next.getEntryHash(nextLine), "line " + line);
+		}
+		assertEquals(1000, next.getId(501), "new");
+		assertEquals(501, next.getLine(1000), "new");
+	}
+
+	@Test
+	void reloadHashesLikeAFullLoad() throws IOException {
+		write("cat, chat\ndog, chien\nbird, oiseau\nfish, poisson\n");
+		Dictionary previous = new Dictionary("words.txt");
+		write("cat, chat\nant, fourmi\nfish, poisson\nbird, oiseau\n");
+		Dictionary next = previous.reload("words.txt"), full = new Dictionary("words.txt");
+		for (int line = 0; line < 4; line++) assertEquals(full.getEntryHash(line), next.getEntryHash(line), "line " + line);
+		assertEquals(full.getVersionHash(), next.getVersionHash());
+		assertEquals(3, next.search("oise", 10)[0]);
+	}
+
+	private void write(String text) throws IOException {
+		Files.writeString(directory.resolve("words.txt"), text);
+	}
+}
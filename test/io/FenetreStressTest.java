@@ -0,0 +1,175 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.PathIterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListModel;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The elements of a window are updated from the event dispatch thread, from the timer of
+ * the window and from other threads at the same time (e.g : the dictionary loaded in the
+ * background) : no update may be lost or fail. The elements and the drawn batches are
+ * tested without a window, so that the tests also run without a display.
+ * @author Erwin Redoté
+ */
+class FenetreStressTest {
+
+	private static final int THREADS = 8, UPDATES = 2000, BATCHES = 200;
+
+	@Test
+	void elementsAreUpdatedFromManyThreads() throws Exception {
+		ElementVisible[] elements = { new Etiquette("etiquette", new JLabel()),
+				new EtiquetteDessinee("dessinee", "", AlignementTexte.CENTRE, new CacheTexte(16)),
+				new ZoneSaisie("saisie", new JTextField()) };
+		enParallele(THREADS, number -> {
+			for (int i = 0; i < UPDATES; i++) {
+				String value = number + ":" + i;
+				for (ElementVisible element : elements) {
+					element.setValeur(value);
+					element.getValeur();
+				}
+			}
+		});
+
+		/* The last value written by one of the threads is shown */
+		for (ElementVisible element : elements) {
+			String value = element.getValeur();
+			assertTrue(value.endsWith(":" + (UPDATES - 1)), element.getNom() + " : " + value);
+		}
+	}
+
+	@Test
+	void batchesAreDrawnFromManyThreads() throws Exception {
+		FormesParLots lots = new FormesParLots();
+		Color[] couleurs = { Color.RED, Color.GREEN, Color.BLUE };
+		AtomicBoolean fini = new AtomicBoolean(false);
+		enParallele(THREADS + 1, number -> {
+			if (number == THREADS) {
+				/* The copy being drawn is always complete : a whole path per shape */
+				while (!fini.get()) {
+					for (FormesParLots.LotDessine lot : lots.getLots()) {
+						assertEquals(5 * lot.nbRectangles, segments(lot.rectangles));
+						assertEquals(2 * lot.nbLignes, segments(lot.lignes));
+					}
+				}
+				return;
+			}
+			int[] x = { 0, 10, 20 }, y = { 0, 10, 20 }, sizes = { 5, 5, 5 };
+			for (int i = 0; i < BATCHES; i++) {
+				Color couleur = couleurs[(number + i) % couleurs.length];
+				lots.ajouter(couleur, x, y, sizes, sizes, 3, true);
+				lots.ajouter(couleur, x, y, x, y, 2, false);
+			}
+			if (number == 0) fini.set(true);
+		});
+
+		int rectangles = 0, lignes = 0;
+		for (FormesParLots.LotDessine lot : lots.getLots()) {
+			rectangles += lot.nbRectangles;
+			lignes += lot.nbLignes;
+		}
+		assertEquals(THREADS * BATCHES * 3, rectangles);
+		assertEquals(THREADS * BATCHES * 2, lignes);
+	}
+
+	@Test
+	void virtualListIsReadWhileReplaced() throws Exception {
+		ListeVirtuelle liste = new ListeVirtuelle("liste", new JList<String>(), 0, indice -> "", "option 00");
+		@SuppressWarnings("unchecked")
+		ListModel<String> modele = ((JList<String>) ((JScrollPane) liste.getComposant()).getViewport().getView()).getModel();
+		AtomicBoolean fini = new AtomicBoolean(false);
+		enParallele(THREADS, number -> {
+			if (number == 0) {
+				/* Each content only has its own options : a reader mixing two contents would go out of the array */
+				for (int i = 0; i < UPDATES; i++) {
+					String[] options = new String[1 + i % 50];
+					for (int k = 0; k < options.length; k++) options[k] = "option " + k;
+					liste.setContenu(options.length, k -> options[k]);
+				}
+				fini.set(true);
+				return;
+			}
+			while (!fini.get()) {
+				int taille = modele.getSize();
+				String option = modele.getElementAt(Math.max(0, taille - 1));
+				assertTrue(option.isEmpty() || option.startsWith("option "), option);
+			}
+		});
+
+		liste.setValeur("option 3");
+		assertEquals("option 3", liste.getValeur());
+		liste.setValeur("absente");
+		assertEquals("", liste.getValeur());
+	}
+
+	@Test
+	void textCacheIsSharedByThreads() throws Exception {
+		CacheTexte cache = new CacheTexte(16);
+		Font police = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+		FontRenderContext contexte = new FontRenderContext(null, true, true);
+		enParallele(THREADS, number -> {
+			for (int i = 0; i < UPDATES; i++) {
+				TextLayout layout = cache.get("texte " + (i % 32), police, contexte);
+				assertEquals(cache.get("texte " + (i % 32), police, contexte).getCharacterCount(), layout.getCharacterCount());
+			}
+		});
+
+		/* Without eviction in between, a text is laid out once */
+		TextLayout stable = cache.get("stable", police, contexte);
+		assertSame(stable, cache.get("stable", police, contexte));
+	}
+
+	/**
+	 * Run a task in the specified number of threads at the same time, and fail if one of them failed.
+	 */
+	private static void enParallele(int threads, Tache tache) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int thread = 0; thread < threads; thread++) {
+			int number = thread;
+			executor.execute(() -> {
+				try {
+					start.await();
+					tache.executer(number);
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		if (failure.get() != null) throw new AssertionError(failure.get());
+	}
+
+	private static int segments(Shape forme) {
+		int count = 0;
+		for (PathIterator iterator = forme.getPathIterator(null); !iterator.isDone(); iterator.next()) count++;
+		return count;
+	}
+
+	private interface Tache {
+		void executer(int number) throws Exception;
+	}
+}
@@ -0,0 +1,93 @@
+package io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.JJ_Result;
+
+/**
+ * The answers recorded at the same time by two threads (jcstress, see the profile "jcstress" of the build).
+ * @author Erwin Redoté
+ */
+public class LearningStatisticsStress {
+
+	private static final Dictionary DICTIONARY;
+
+	static {
+		try {
+			Path file = Files.createTempFile("stress-", ".txt");
+			file.toFile().deleteOnExit();
+			Files.writeString(file, "cat, chat\ndog, chien\n");
+			/* The path of a dictionary is relative to the project */
+			DICTIONARY = new Dictionary(Path.of(System.getProperty("user.dir")).relativize(file).toString());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@JCStressTest
+	@Outcome(id = "2, 1", expect = Expect.ACCEPTABLE, desc = "Both answers are recorded")
+	@Outcome(expect = Expect.FORBIDDEN, desc = "An answer is lost")
+	@State
+	public static class SameWord {
+
+		private final LearningStatistics statistics = new LearningStatistics(2);
+
+		public SameWord() {
+			statistics.bind(DICTIONARY);
+		}
+
+		@Actor
+		public void correct() {
+			statistics.record(DICTIONARY.getId(0), true, 10);
+		}
+
+		@Actor
+		public void wrong() {
+			statistics.record(DICTIONARY.getId(0), false, 10);
+		}
+
+		@Arbiter
+		public void arbiter(JJ_Result result) {
+			result.r1 = statistics.getAttempts(DICTIONARY.getId(0));
+			result.r2 = statistics.getCorrect(DICTIONARY.getId(0));
+		}
+	}
+
+	@JCStressTest
+	@Outcome(id = "1, 1", expect = Expect.ACCEPTABLE, desc = "Each word has its own record")
+	@Outcome(expect = Expect.FORBIDDEN, desc = "The words share a record, or an answer is lost")
+	@State
+	public static class NewWords {
+
+		private final LearningStatistics statistics = new LearningStatistics(2);
+
+		public NewWords() {
+			statistics.bind(DICTIONARY);
+		}
+
+		@Actor
+		public void cat() {
+			statistics.record(DICTIONARY.getId(0), true, 10);
+		}
+
+		@Actor
+		public void dog() {
+			statistics.record(DICTIONARY.getId(1), true, 10);
+		}
+
+		@Arbiter
+		public void arbiter(JJ_Result result) {
+			result.r1 = statistics.getAttempts(DICTIONARY.getId(0));
+			result.r2 = statistics.getAttempts(DICTIONARY.getId(1));
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The statistics stay attached to their words from one run to another, and no answer
+ * is lost when many threads record at the same time.
+ * @author Erwin Redoté
+ */
+class LearningStatisticsTest {
+
+	private static final int THREADS = 8, ANSWERS = 30000, WORDS = 3000;
+
+	@TempDir
+	Path directory;
+	private String userDir;
+
+	@BeforeEach
+	void useDirectory() {
+		userDir = System.getProperty("user.dir");
+		System.setProperty("user.dir", directory.toString());
+	}
+
+	@AfterEach
+	void restoreDirectory() {
+		System.setProperty("user.dir", userDir);
+	}
+
+	@Test
+	void recordsFollowTheirWords() throws IOException {
+		Files.writeString(directory.resolve("words.txt"), "cat, chat\ndog, chien\n");
+		Dictionary dictionary = new Dictionary("words.txt");
+		try (LearningStatistics statistics = new LearningStatistics("statistics.bin", dictionary.getLanguages(), 2)) {
+			statistics.bind(dictionary);
+			statistics.record(dictionary.getId(0), true, 100);
+			statistics.record(dictionary.getId(0), false, 300);
+		}
+
+		/* A new run, after a line has been inserted before cat */
+		Files.writeString(directory.resolve("words.txt"), "ant, fourmi\ncat, chat\ndog, chien\n");
+		dictionary = new Dictionary("words.txt");
+		try (LearningStatistics statistics = new LearningStatistics("statistics.bin", dictionary.getLanguages(), 2)) {
+			statistics.bind(dictionary);
+			assertEquals(0, statistics.getAttempts(dictionary.getId(0)), "ant");
+			assertEquals(2, statistics.getAttempts(dictionary.getId(1)), "cat");
+			assertEquals(1, statistics.getCorrect(dictionary.getId(1)), "cat");
+			assertEquals(200, statistics.getMeanLatencyMs(dictionary.getId(1)), "cat");
+			assertEquals(0, statistics.getAttempts(dictionary.getId(2)), "dog");
+		}
+		assertThrows(IOException.class, () -> new LearningStatistics("statistics.bin", new String[] { "ANGLAIS", "ESPAGNOL" }, 2));
+	}
+
+	@Test
+	void concurrentAnswersAreAllRecorded() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < WORDS; i++) text.append("word").append(i).append(", mot").append(i).append('\n');
+		Files.writeString(directory.resolve("words.txt"), text);
+		Dictionary dictionary = new Dictionary("words.txt");
+		try (LearningStatistics statistics = new LearningStatistics("statistics.bin", dictionary.getLanguages(), 1)) {
+			statistics.bind(dictionary);
+			/* The records are created (and the file grows) while the threads answer */
+			ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+			CountDownLatch start = new CountDownLatch(1);
+			for (int thread = 0; thread < THREADS; thread++) {
+				executor.execute(() -> {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int answer = 0; answer < ANSWERS; answer++) {
+						statistics.record(dictionary.getId(answer % WORDS), answer % 2 == 0, 1);
+					}
+				});
+			}
+			start.countDown();
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+			long attempts = 0, correct = 0;
+			for (int line = 0; line < WORDS; line++) {
+				attempts += statistics.getAttempts(dictionary.getId(line));
+				correct += statistics.getCorrect(dictionary.getId(line));
+			}
+			assertEquals((long) THREADS * ANSWERS, attempts);
+			assertEquals((long) THREADS * ANSWERS / 2, correct);
+		}
+
+		/* The records created after the file has grown are found again */
+		try (LearningStatistics statistics = new LearningStatistics("statistics.bin", dictionary.getLanguages(), 1)) {
+			statistics.bind(dictionary);
+			for (int line = 0; line < WORDS; line++) {
+				assertEquals((long) THREADS * ANSWERS / WORDS, statistics.getAttempts(dictionary.getId(line)), "line " + line);
+			}
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Many sessions end at the same time : every result accepted by the exporter is written
+ * exactly once, even when the file is renamed in the meantime or the exporter is closed.
+ * @author Erwin Redoté
+ */
+class ResultExporterTest {
+
+	private static final int THREADS = 8, RESULTS = 2000;
+
+	@TempDir
+	Path directory;
+	private String userDir;
+
+	@BeforeEach
+	void useDirectory() {
+		userDir = System.getProperty("user.dir");
+		System.setProperty("user.dir", directory.toString());
+	}
+
+	@AfterEach
+	void restoreDirectory() {
+		System.setProperty("user.dir", userDir);
+	}
+
+	@Test
+	void acceptedResultsAreWrittenOnce() throws Exception {
+		for (ResultExporter.Format format : ResultExporter.Format.values()) {
+			Path results = Files.createDirectory(directory.resolve(format.name()));
+			AtomicInteger accepted = new AtomicInteger();
+			/* A small maximum size : the file is renamed many times */
+			try (ResultExporter exporter = new ResultExporter(format.name() + "/results.txt", format, 16 * 1024)) {
+				ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+				CountDownLatch start = new CountDownLatch(1);
+				for (int thread = 0; thread < THREADS; thread++) {
+					/* Accented names : the file holds more bytes than characters */
+				String learner = "learner \"" + thread + "\", élève é";
+					executor.execute(() -> {
+						try {
+							start.await();
+						} catch (InterruptedException e) {
+							return;
+						}
+						for (int i = 0; i < RESULTS; i++) {
+							if (exporter.submit(new ResultExporter.Result(learner, i, i, i % 11, 10, 1000, "ANGLAIS,FRANCAIS"))) {
+								accepted.incrementAndGet();
+							}
+						}
+					});
+				}
+				start.countDown();
+				executor.shutdown();
+				assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+			}
+
+			List<String> lines;
+			try (Stream<Path> files = Files.list(results)) {
+				lines = files.flatMap(file -> {
+					try {
+						return Files.readAllLines(file).stream();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}).filter(line -> !line.startsWith("learner,")).collect(Collectors.toList());
+			}
+			/* The files are renamed from the number of bytes written */
+			try (Stream<Path> files = Files.list(results)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					assertTrue(Files.size(file) <= 16 * 1024, file + " : " + Files.size(file) + " bytes");
+				}
+			}
+			assertTrue(accepted.get() > 0, format.name());
+			assertEquals(accepted.get(), lines.size(), format.name());
+			for (String line : lines) {
+				assertTrue(line.startsWith(format == ResultExporter.Format.CSV ? "\"learner \"\"" : "{\"learner\":\"learner \\\""), line);
+			}
+		}
+	}
+
+	@Test
+	void noResultIsAcceptedOnceClosed() throws Exception {
+		AtomicInteger accepted = new AtomicInteger();
+		AtomicBoolean closed = new AtomicBoolean();
+		AtomicInteger acceptedAfterClose = new AtomicInteger();
+		ResultExporter exporter = new ResultExporter("results.txt", ResultExporter.Format.JSON, 1024 * 1024);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		for (int thread = 0; thread < THREADS; thread++) {
+			executor.execute(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < RESULTS; i++) {
+					boolean after = closed.get();
+					if (exporter.submit(new ResultExporter.Result("learner", i, i, 1, 10, 1000, "ANGLAIS,FRANCAIS"))) {
+						accepted.incrementAndGet();
+						if (after) acceptedAfterClose.incrementAndGet();
+					}
+				}
+			});
+		}
+		start.countDown();
+		Thread.sleep(5);
+		exporter.close();
+		closed.set(true);
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+		assertEquals(0, acceptedAfterClose.get());
+		assertEquals(accepted.get(), Files.readAllLines(directory.resolve("results.txt")).size());
+	}
+}
@@ -0,0 +1,71 @@
+package main;
+
+import java.util.List;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+import org.openjdk.jcstress.infra.results.JJ_Result;
+
+/**
+ * Two sessions of the class that end at the same time (jcstress, see the profile "jcstress" of the build).
+ * @author Erwin Redoté
+ */
+public class ClassStatisticsStress {
+
+    @JCStressTest
+    @Outcome(id = "9, 2", expect = Expect.ACCEPTABLE, desc = "The best score is kept, both sessions are counted")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "The best score is lost, or the list has the wrong size")
+    @State
+    public static class TopScores {
+
+        private final ClassStatistics statistics = new ClassStatistics(1);
+
+        @Actor
+        public void best() {
+            statistics.recordSession("alice", 9, 10, 1000);
+        }
+
+        @Actor
+        public void worst() {
+            statistics.recordSession("bob", 5, 10, 1000);
+        }
+
+        @Arbiter
+        public void arbiter(II_Result result) {
+            List<ClassStatistics.Score> scores = statistics.getTopScores();
+            result.r1 = scores.size() == 1 ? scores.get(0).points : -scores.size();
+            result.r2 = (int) statistics.getSessions();
+        }
+    }
+
+    @JCStressTest
+    @Outcome(id = "2, 1", expect = Expect.ACCEPTABLE, desc = "Both answers are counted")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "An answer is lost")
+    @State
+    public static class Answers {
+
+        private final ClassStatistics statistics = new ClassStatistics(1);
+
+        @Actor
+        public void correct() {
+            statistics.recordAnswer(0, 42, true);
+        }
+
+        @Actor
+        public void wrong() {
+            statistics.recordAnswer(0, 42, false);
+        }
+
+        @Arbiter
+        public void arbiter(JJ_Result result) {
+            ClassStatistics.WordCounters word = statistics.getHardestWords(1).get(0);
+            result.r1 = word.getAttempts();
+            result.r2 = word.getErrors();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.ClassResults;
+import io.Dictionary;
+
+/**
+ * The results of the class are kept from one game to another, and the games that end at
+ * the same time don't erase each other's results.
+ * @author Erwin Redoté
+ */
+class ClassStatisticsTest {
+
+    private static final int GAMES = 8;
+
+    @TempDir
+    Path directory;
+    private String userDir;
+
+    @BeforeEach
+    void useDirectory() {
+        userDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", directory.toString());
+    }
+
+    @AfterEach
+    void restoreDirectory() {
+        System.setProperty("user.dir", userDir);
+    }
+
+    @Test
+    void gamesAddTheirResults() throws Exception {
+        Files.writeString(directory.resolve("words.txt"), "cat, chat\ndog, chien\n");
+        Dictionary first = new Dictionary("words.txt");
+        ClassResults store = new ClassResults("class.bin");
+
+        /* The games started together end together */
+        List<ClassStatistics> games = new ArrayList<>();
+        for(int game = 0; game < GAMES; game++) games.add(new ClassStatistics(3, store, first));
+        ExecutorService executor = Executors.newFixedThreadPool(GAMES);
+        List<Future<?>> ends = new ArrayList<>();
+        for(int game = 0; game < GAMES; game++) {
+            ClassStatistics statistics = games.get(game);
+            int points = game;
+            ends.add(executor.submit(() -> {
+                for(int i = 0; i < 10; i++) statistics.recordAnswer(first.getId(1), first.getEntryHash(1), i < points);
+                statistics.recordSession("learner" + points, points, 10, 1000);
+                statistics.close();
+                return null;
+            }));
+        }
+        for(Future<?> end : ends) end.get();
+        executor.shutdown();
+
+        /* The next game, after a word has been inserted before dog */
+        Files.writeString(directory.resolve("words.txt"), "ant, fourmi\ncat, chat\ndog, chien\n");
+        Dictionary dictionary = new Dictionary("words.txt");
+        ClassStatistics next = new ClassStatistics(3, store, dictionary);
+        assertEquals(GAMES, next.getSessions());
+        assertEquals("[learner7 7/10, learner6 6/10, learner5 5/10]", next.getTopScores().toString());
+        List<ClassStatistics.WordCounters> hardest = next.getHardestWords(3);
+        assertEquals(1, hardest.size());
+        assertEquals(2, dictionary.getLine(hardest.get(0).id));
+        assertEquals(GAMES * 10, hardest.get(0).getAttempts());
+        assertEquals(GAMES * 10 - (GAMES - 1) * GAMES / 2, hardest.get(0).getErrors());
+    }
+}
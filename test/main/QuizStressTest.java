@@ -0,0 +1,120 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.DictionaryWatcher;
+import io.LearningStatistics;
+
+/**
+ * Many learners play at the same time with the statistics of the class, while the
+ * vocabulary file is edited and reloaded : every answer and every session is counted.
+ * @author Erwin Redoté
+ */
+class QuizStressTest {
+
+    private static final int LEARNERS = 16, SESSIONS = 30, WORDS = 300, TOP_SCORES = 3;
+
+    @TempDir
+    Path directory;
+    private String userDir;
+
+    @BeforeEach
+    void useDirectory() {
+        userDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", directory.toString());
+    }
+
+    @AfterEach
+    void restoreDirectory() {
+        System.setProperty("user.dir", userDir);
+    }
+
+    @Test
+    void answersAreCountedWhileTheDictionaryIsReloaded() throws Exception {
+        write(WORDS);
+        for(int shardSize : new int[] { 0, 64 }) {
+            DictionaryWatcher dictionaries = new DictionaryWatcher("words.txt", shardSize, 16 * 1024);
+            ClassStatistics classStatistics = new ClassStatistics(TOP_SCORES);
+            AtomicBoolean playing = new AtomicBoolean(true);
+            ExecutorService executor = Executors.newFixedThreadPool(LEARNERS + 1);
+
+            /* The teacher adds words while the learners play (The file is replaced at once, like a text editor does) */
+            Future<?> teacher = executor.submit(() -> {
+                for(int words = WORDS + 1; playing.get() && words < 2 * WORDS; words++) {
+                    write(words);
+                    dictionaries.reload();
+                }
+                return null;
+            });
+            List<Future<Integer>> learners = new ArrayList<>();
+            for(int learner = 0; learner < LEARNERS; learner++) {
+                long seed = learner;
+                learners.add(executor.submit(() -> {
+                    LearningStatistics statistics = new LearningStatistics(WORDS);
+                    Quiz quiz = new Quiz(dictionaries::getDictionary, null, seed, seed % 2 == 0, statistics, seed % 3 == 0 ? Quiz.TIME_LIMIT_MS : 0);
+                    quiz.setClassStatistics(classStatistics, "learner" + seed);
+                    Random random = new Random(seed);
+                    int points = 0;
+                    for(int session = 0; session < SESSIONS; session++) {
+                        quiz.restart();
+                        while(!quiz.isOver()) {
+                            String[] word = quiz.generateWord();
+                            assertNotNull(word[0]);
+                            boolean knows = random.nextBoolean();
+                            if(quiz.checkWord(knows ? word[1] : "?", 1_000_000L * random.nextInt(10000), false)) points++;
+                        }
+                        /* Nothing is asked nor recorded once the session is over */
+                        quiz.generateWord();
+                        assertFalse(quiz.checkWord("?", 0, false));
+                    }
+                    return points;
+                }));
+            }
+            int points = 0;
+            for(Future<Integer> learner : learners) points += learner.get();
+            playing.set(false);
+            teacher.get();
+            executor.shutdown();
+            dictionaries.close();
+
+            long questions = (long) LEARNERS * SESSIONS * Quiz.MAX_WORDS;
+            assertEquals(LEARNERS * SESSIONS, classStatistics.getSessions());
+            assertEquals(100.0 * points / questions, classStatistics.getMeanScore(), 1e-9);
+            long attempts = 0;
+            for(ClassStatistics.WordCounters word : classStatistics.getHardestWords(Integer.MAX_VALUE)) attempts += word.getAttempts();
+            assertEquals(questions, attempts);
+
+            List<ClassStatistics.Score> scores = classStatistics.getTopScores();
+            assertEquals(TOP_SCORES, scores.size());
+            for(int i = 1; i < scores.size(); i++) assertTrue(scores.get(i - 1).points >= scores.get(i).points, scores.toString());
+        }
+    }
+
+    /* Write the file aside then move it */
+    private void write(int words) throws IOException {
+        StringBuilder text = new StringBuilder("# ANGLAIS, FRANCAIS\n");
+        for(int i = 0; i < words; i++) text.append("word").append(i).append(", mot").append(i).append('\n');
+        Path written = Files.writeString(directory.resolve("words.tmp"), text);
+        Files.move(written, directory.resolve("words.txt"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}